@@ -0,0 +1,44 @@
+package mango.compress.lz4;
+
+import mango.codec.Compressor;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.IOException;
+
+/**
+ * LZ4压缩，速度最快，压缩率低于deflate/zstd
+ * @author Ricky Fung
+ */
+public class Lz4Compressor implements Compressor {
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    public Lz4Compressor() {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        return compressor.compress(data, offset, length);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+        byte[] result = new byte[originalLength];
+        try {
+            int n = decompressor.decompress(data, offset, length, result, 0);
+            if (n != originalLength) {
+                throw new IOException("lz4 data corrupted, expect " + originalLength + " bytes, got " + n);
+            }
+        } catch (LZ4Exception e) {
+            throw new IOException("lz4 data corrupted", e);
+        }
+        return result;
+    }
+}
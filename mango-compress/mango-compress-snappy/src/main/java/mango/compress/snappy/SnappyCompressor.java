@@ -0,0 +1,31 @@
+package mango.compress.snappy;
+
+import mango.codec.Compressor;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Snappy压缩
+ * @author Ricky Fung
+ */
+public class SnappyCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        byte[] result = new byte[Snappy.maxCompressedLength(length)];
+        int n = Snappy.compress(data, offset, length, result, 0);
+        return Arrays.copyOf(result, n);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+        if (Snappy.uncompressedLength(data, offset, length) != originalLength) {
+            throw new IOException("snappy data corrupted, expect " + originalLength + " bytes");
+        }
+        byte[] result = new byte[originalLength];
+        Snappy.uncompress(data, offset, length, result, 0);
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package mango.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import mango.codec.Compressor;
+import mango.exception.RpcFrameworkException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * zstd压缩，可以使用预先训练的字典提高小消息的压缩率
+ * -Dmango.compress.zstd.level 压缩级别，默认3
+ * -Dmango.compress.zstd.dictionary 字典文件路径，通信双方必须使用同一个字典
+ * @author Ricky Fung
+ */
+public class ZstdCompressor implements Compressor {
+
+    private final int level = Integer.getInteger("mango.compress.zstd.level", 3);
+    private final ZstdDictCompress dictCompress;
+    private final ZstdDictDecompress dictDecompress;
+
+    public ZstdCompressor() {
+        String dictionary = System.getProperty("mango.compress.zstd.dictionary");
+        if (dictionary != null && dictionary.length() > 0) {
+            try {
+                byte[] dict = Files.readAllBytes(Paths.get(dictionary));
+                this.dictCompress = new ZstdDictCompress(dict, level);
+                this.dictDecompress = new ZstdDictDecompress(dict);
+            } catch (IOException e) {
+                throw new RpcFrameworkException("load zstd dictionary failure: " + dictionary, e);
+            }
+        } else {
+            this.dictCompress = null;
+            this.dictDecompress = null;
+        }
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        byte[] src = offset == 0 && length == data.length ? data : Arrays.copyOfRange(data, offset, offset + length);
+        return dictCompress != null ? Zstd.compress(src, dictCompress) : Zstd.compress(src, level);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+        byte[] src = offset == 0 && length == data.length ? data : Arrays.copyOfRange(data, offset, offset + length);
+        byte[] result = new byte[originalLength];
+        long n = dictDecompress != null ? Zstd.decompress(result, src, dictDecompress) : Zstd.decompress(result, src);
+        if (Zstd.isError(n)) {
+            throw new IOException("zstd data corrupted: " + Zstd.getErrorName(n));
+        }
+        if (n != originalLength) {
+            throw new IOException("zstd data corrupted, expect " + originalLength + " bytes, got " + n);
+        }
+        return result;
+    }
+}
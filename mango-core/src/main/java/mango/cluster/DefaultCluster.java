@@ -28,6 +28,15 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class DefaultCluster<T> implements Cluster<T>, NotifyListener {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    /**
+     * 连接相关的参数以消费端的配置为准
+     */
+    private static final URLParam[] CLIENT_PARAMS = {URLParam.zeroCopy,
+            URLParam.poolType, URLParam.minPoolSize, URLParam.maxPoolSize, URLParam.heartbeat,
+            URLParam.writeBatch, URLParam.writeBatchSize, URLParam.writeBatchDelay,
+            URLParam.transport, URLParam.epollMode, URLParam.tcpQuickAck, URLParam.busyPoll,
+            URLParam.codecVersion, URLParam.compression, URLParam.compressThreshold, URLParam.streamWindow,
+            URLParam.writeBufferHighWaterMark, URLParam.writeBufferLowWaterMark, URLParam.maxInFlight, URLParam.backpressure};
 
     private List<URL> registryUrls;
     private URL url;
@@ -178,6 +187,9 @@ public class DefaultCluster<T> implements Cluster<T>, NotifyListener {
             if (reference == null) {
                 // 如果已注册中的服务为空那么就将此url值克隆进去
                 URL referenceURL = u.clone0();
+                for (URLParam param : CLIENT_PARAMS) {
+                    referenceURL.addParameter(param.getName(), url.getParameter(param.getName()));
+                }
                 // 创建默认的rpc引用
                 reference = protocol.refer(interfaceClass, referenceURL, u);
             }
@@ -21,7 +21,22 @@ public class RandomLoadBalance<T> implements LoadBalance<T> {
 
     @Override
     public Reference select(Request request) {
-        int idx = (int) (ThreadLocalRandom.current().nextDouble() * references.size());
-        return references.get(idx);
+        List<Reference<T>> references = this.references;
+        int size = references.size();
+        int idx = (int) (ThreadLocalRandom.current().nextDouble() * size);
+        // 从随机位置开始跳过不可用和连接饱和的服务，都饱和时返回第一个可用的，都不可用时仍返回随机选中的
+        Reference<T> available = null;
+        for (int i = 0; i < size; i++) {
+            Reference<T> reference = references.get((idx + i) % size);
+            if (reference.isAvailable()) {
+                if (!reference.isSaturated()) {
+                    return reference;
+                }
+                if (available == null) {
+                    available = reference;
+                }
+            }
+        }
+        return available != null ? available : references.get(idx);
     }
 }
@@ -1,5 +1,10 @@
 package mango.codec;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import mango.common.URL;
+
 import java.io.IOException;
 
 /**
@@ -9,6 +14,24 @@ import java.io.IOException;
  */
 public abstract class AbstractCodec implements Codec {
 
+    /**
+     * 默认通过byte[]方式适配，子类可覆盖以实现真正的零拷贝
+     */
+    @Override
+    public void encode(URL url, Object message, ByteBuf out) throws IOException {
+        byte[] data = encode(url, message);
+        if (data != null) {
+            out.writeBytes(data);
+        }
+    }
+
+    @Override
+    public Object decode(URL url, byte messageType, ByteBuf in) throws IOException {
+        byte[] data = new byte[in.readableBytes()];
+        in.readBytes(data);
+        return decode(url, messageType, data);
+    }
+
     /**
      * 定义为protected 让子类去具体实现
      */
@@ -25,4 +48,35 @@ public abstract class AbstractCodec implements Codec {
         }
         return serializer.deserialize(data, type);
     }
+
+    /**
+     * 序列化器支持ByteBuf或流式写入时直接写入out，否则退化为byte[]拷贝
+     */
+    protected void serialize(Object message, Serializer serializer, ByteBuf out) throws IOException {
+        if (message == null) {
+            return;
+        }
+        if (serializer instanceof BufferSerializer) {
+            ((BufferSerializer) serializer).serialize(message, out);
+        } else if (serializer instanceof StreamSerializer) {
+            ((StreamSerializer) serializer).serialize(message, new ByteBufOutputStream(out));
+        } else {
+            out.writeBytes(serializer.serialize(message));
+        }
+    }
+
+    protected Object deserialize(ByteBuf in, Class<?> type, Serializer serializer) throws IOException {
+        if (in == null) {
+            return null;
+        }
+        if (serializer instanceof BufferSerializer) {
+            return ((BufferSerializer) serializer).deserialize(in, type);
+        }
+        if (serializer instanceof StreamSerializer) {
+            return ((StreamSerializer) serializer).deserialize(new ByteBufInputStream(in, in.readableBytes()), type);
+        }
+        byte[] data = new byte[in.readableBytes()];
+        in.readBytes(data);
+        return serializer.deserialize(data, type);
+    }
 }
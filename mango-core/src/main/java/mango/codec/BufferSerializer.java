@@ -0,0 +1,16 @@
+package mango.codec;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+
+/**
+ * 支持直接读写ByteBuf的序列化，避免中间的byte[]拷贝
+ * @author Ricky Fung
+ */
+public interface BufferSerializer extends Serializer {
+
+    void serialize(Object msg, ByteBuf out) throws IOException;
+
+    <T> T deserialize(ByteBuf in, Class<T> type) throws IOException;
+}
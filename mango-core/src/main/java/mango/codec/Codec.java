@@ -1,5 +1,6 @@
 package mango.codec;
 
+import io.netty.buffer.ByteBuf;
 import mango.common.URL;
 import mango.core.extension.SPI;
 import mango.util.Constants;
@@ -18,4 +19,24 @@ public interface Codec {
     byte[] encode(URL url, Object message) throws IOException;
 
     Object decode(URL url, byte messageType, byte[] data) throws IOException;
+
+    /**
+     * 零拷贝编码：将消息体直接写入传输层的ByteBuf中
+     */
+    void encode(URL url, Object message, ByteBuf out) throws IOException;
+
+    /**
+     * 零拷贝解码：直接从帧的ByteBuf切片中读取消息体
+     */
+    Object decode(URL url, byte messageType, ByteBuf in) throws IOException;
+
+    /**
+     * 使用指定的序列化器将消息体写入out，v2帧头带有序列化器id，不需要每次从URL中查找
+     */
+    void encode(Serializer serializer, Object message, ByteBuf out) throws IOException;
+
+    /**
+     * 使用帧头中序列化器id对应的序列化器解码
+     */
+    Object decode(Serializer serializer, byte messageType, ByteBuf in) throws IOException;
 }
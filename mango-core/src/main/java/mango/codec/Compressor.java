@@ -0,0 +1,21 @@
+package mango.codec;
+
+import mango.core.extension.SPI;
+import mango.core.extension.Scope;
+
+import java.io.IOException;
+
+/**
+ * 消息体压缩
+ * @author Ricky Fung
+ */
+@SPI(value = "deflate", scope = Scope.SINGLETON)
+public interface Compressor {
+
+    byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * @param originalLength 压缩前的字节数，由发送方写在消息体中
+     */
+    byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException;
+}
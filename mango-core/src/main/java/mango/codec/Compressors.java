@@ -0,0 +1,56 @@
+package mango.codec;
+
+import mango.core.extension.ExtensionLoader;
+import mango.exception.RpcFrameworkException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 压缩方式与压缩消息体中压缩器id的对应关系
+ * @author Ricky Fung
+ */
+public final class Compressors {
+
+    private static final String[] NAMES = {null, "deflate", "lz4", "snappy", "zstd"};
+    private static final Map<String, Byte> IDS = new HashMap<>();
+    // id -> 压缩器，首次使用时加载
+    private static final AtomicReferenceArray<Compressor> COMPRESSORS = new AtomicReferenceArray<>(NAMES.length);
+
+    static {
+        for (int i = 1; i < NAMES.length; i++) {
+            IDS.put(NAMES[i], (byte) i);
+        }
+    }
+
+    private Compressors() {}
+
+    public static byte getId(String name) {
+        Byte id = IDS.get(name);
+        if (id == null) {
+            throw new RpcFrameworkException("unknown compression: " + name);
+        }
+        return id;
+    }
+
+    public static String getName(byte id) {
+        if (id <= 0 || id >= NAMES.length) {
+            throw new RpcFrameworkException("unknown compressor id: " + id);
+        }
+        return NAMES[id];
+    }
+
+    public static Compressor getCompressor(byte id) {
+        String name = getName(id);
+        Compressor compressor = COMPRESSORS.get(id);
+        if (compressor == null) {
+            compressor = ExtensionLoader.getExtensionLoader(Compressor.class).getExtension(name);
+            if (compressor == null) {
+                throw new RpcFrameworkException("compressor " + name + " is not in classpath");
+            }
+            COMPRESSORS.lazySet(id, compressor);
+        }
+        return compressor;
+    }
+}
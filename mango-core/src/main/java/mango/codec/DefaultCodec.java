@@ -1,5 +1,6 @@
 package mango.codec;
 
+import io.netty.buffer.ByteBuf;
 import mango.common.URL;
 import mango.common.URLParam;
 import mango.core.DefaultRequest;
@@ -23,7 +24,7 @@ public class DefaultCodec extends AbstractCodec {
     public byte[] encode(URL url, Object message) throws IOException {
         // 获取URL参数中的序列化值，默认是 protostuff
         String serialization = url.getParameter(URLParam.serialization.getName(), URLParam.serialization.getValue());
-        logger.info("Codec encode serialization:{}", serialization);
+        logger.debug("Codec encode serialization:{}", serialization);
         // 根据序列化值去获取获取SPI扩展实例对象
         return serialize(message, ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialization));
     }
@@ -31,10 +32,39 @@ public class DefaultCodec extends AbstractCodec {
     @Override
     public Object decode(URL url, byte messageType, byte[] data) throws IOException {
         String serialization = url.getParameter(URLParam.serialization.getName(), URLParam.serialization.getValue());
-        logger.info("Codec decode serialization:{}", serialization);
+        logger.debug("Codec decode serialization:{}", serialization);
         if(messageType == Constants.FLAG_REQUEST) {
             return deserialize(data, DefaultRequest.class, ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialization));
         }
         return deserialize(data, DefaultResponse.class, ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialization));
     }
+
+    @Override
+    public void encode(URL url, Object message, ByteBuf out) throws IOException {
+        String serialization = url.getParameter(URLParam.serialization.getName(), URLParam.serialization.getValue());
+        serialize(message, ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialization), out);
+    }
+
+    @Override
+    public Object decode(URL url, byte messageType, ByteBuf in) throws IOException {
+        String serialization = url.getParameter(URLParam.serialization.getName(), URLParam.serialization.getValue());
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialization);
+        if(messageType == Constants.FLAG_REQUEST) {
+            return deserialize(in, DefaultRequest.class, serializer);
+        }
+        return deserialize(in, DefaultResponse.class, serializer);
+    }
+
+    @Override
+    public void encode(Serializer serializer, Object message, ByteBuf out) throws IOException {
+        serialize(message, serializer, out);
+    }
+
+    @Override
+    public Object decode(Serializer serializer, byte messageType, ByteBuf in) throws IOException {
+        if(messageType == Constants.FLAG_REQUEST) {
+            return deserialize(in, DefaultRequest.class, serializer);
+        }
+        return deserialize(in, DefaultResponse.class, serializer);
+    }
 }
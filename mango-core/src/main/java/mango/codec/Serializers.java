@@ -0,0 +1,57 @@
+package mango.codec;
+
+import mango.core.extension.ExtensionLoader;
+import mango.exception.RpcFrameworkException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 序列化器与v2帧头中序列化器id的对应关系
+ * 内置序列化器使用固定id，其他序列化器id为0，由对端按自己配置的序列化方式解码
+ * @author Ricky Fung
+ */
+public final class Serializers {
+
+    public static final byte UNKNOWN_ID = 0;
+
+    private static final String[] NAMES = {null, "protostuff", "hessian", "jdk", "kryo", "fst", "fastjson", "jackson", "msgpack"};
+    private static final Map<String, Byte> IDS = new HashMap<>();
+    // id -> 序列化器，首次使用时加载
+    private static final AtomicReferenceArray<Serializer> SERIALIZERS = new AtomicReferenceArray<>(NAMES.length);
+
+    static {
+        for (int i = 1; i < NAMES.length; i++) {
+            IDS.put(NAMES[i], (byte) i);
+        }
+    }
+
+    private Serializers() {}
+
+    public static byte getId(String name) {
+        Byte id = IDS.get(name);
+        return id != null ? id : UNKNOWN_ID;
+    }
+
+    /**
+     * 根据帧头中的id获取序列化器，id为0时返回null
+     */
+    public static Serializer getSerializer(byte id) {
+        if (id == UNKNOWN_ID) {
+            return null;
+        }
+        if (id < 0 || id >= NAMES.length) {
+            throw new RpcFrameworkException("unknown serializer id: " + id);
+        }
+        Serializer serializer = SERIALIZERS.get(id);
+        if (serializer == null) {
+            serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(NAMES[id]);
+            if (serializer == null) {
+                throw new RpcFrameworkException("serializer " + NAMES[id] + " is not in classpath");
+            }
+            SERIALIZERS.lazySet(id, serializer);
+        }
+        return serializer;
+    }
+}
@@ -0,0 +1,16 @@
+package mango.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 流式序列化：写入调用方提供的输出流，从调用方提供的输入流读取
+ * @author Ricky Fung
+ */
+public interface StreamSerializer extends Serializer {
+
+    void serialize(Object msg, OutputStream out) throws IOException;
+
+    <T> T deserialize(InputStream in, Class<T> type) throws IOException;
+}
@@ -0,0 +1,73 @@
+package mango.codec;
+
+import io.netty.buffer.ByteBuf;
+import mango.exception.RpcFrameworkException;
+
+/**
+ * 无符号varint编解码，每字节低7位存数据，最高位表示后面还有字节
+ * @author Ricky Fung
+ */
+public final class VarInts {
+
+    public static final int MAX_VARINT_SIZE = 5;
+    public static final int MAX_VARLONG_SIZE = 10;
+
+    private VarInts() {}
+
+    public static int size(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void write(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * 按固定字节数写入，不足时用带延续位的0补齐，解码结果不变
+     */
+    public static void write(ByteBuf out, long value, int width) {
+        for (int i = 1; i < width; i++) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) (value & 0x7F));
+    }
+
+    /**
+     * 从readerIndex开始的varint占用的字节数，数据不完整时返回0
+     */
+    public static int readableSize(ByteBuf in, int maxSize) {
+        int readable = Math.min(in.readableBytes(), maxSize);
+        int index = in.readerIndex();
+        for (int i = 0; i < readable; i++) {
+            if ((in.getByte(index + i) & 0x80) == 0) {
+                return i + 1;
+            }
+        }
+        if (readable == maxSize) {
+            throw new RpcFrameworkException("malformed varint");
+        }
+        return 0;
+    }
+
+    public static long read(ByteBuf in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -111,6 +111,14 @@ public class URL {
         return Integer.parseInt(value);
     }
 
+    public boolean getBooleanParameter(String name, boolean defaultValue) {
+        String value = parameters.get(name);
+        if (value == null || value.length() == 0) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value);
+    }
+
     /**
      * 添加一个参数
      */
@@ -28,11 +28,79 @@ public enum URLParam {
     minWorkerThread("minWorkerThread", 20),
     /** service max worker threads **/
     maxWorkerThread("maxWorkerThread", 200),
+    /** 服务端请求派发方式: direct/pool/method/ringbuffer **/
+    dispatcher("dispatcher", "method"),
+    /** 业务线程池队列长度，队列满时返回BUSY **/
+    workerQueueSize("workerQueueSize", 1024),
+    /** CoDel目标排队时间(ms)，0表示关闭 **/
+    codelTarget("codelTarget", 0),
+    /** CoDel统计周期(ms) **/
+    codelInterval("codelInterval", 100),
+    /** 积压时优先处理最新的请求 **/
+    adaptiveLifo("adaptiveLifo", false),
+    /** 业务处理使用虚拟线程: auto(JDK 21+时使用)/true/false，排查pin可在JVM启动参数加-Djdk.tracePinnedThreads=short **/
+    virtualThreads("virtualThreads", "auto"),
+    /** 服务独占的隔离线程池线程数，0表示使用共享线程池，method派发时生效 **/
+    bulkheadThreads("bulkheadThreads", 0),
+    /** 隔离线程池队列长度，队列满时返回BUSY **/
+    bulkheadQueueSize("bulkheadQueueSize", 256),
+    /** 方法级隔离线程池，格式为 方法名:线程数[:队列长度]，多个用逗号分隔 **/
+    bulkheadMethods("bulkheadMethods", ""),
+    /** ringbuffer派发的工作线程数，0表示CPU核数 **/
+    ringBufferWorkers("ringBufferWorkers", 0),
+    /** ringbuffer派发每个工作线程的环形队列长度，向上取整为2的幂，满时返回BUSY **/
+    ringBufferSize("ringBufferSize", 1024),
+    /** ringbuffer工作线程空闲时的等待策略: busyspin/yield/park **/
+    waitStrategy("waitStrategy", "park"),
 
     /**netty**/
     maxContentLength("maxContentLength", 1<<24),
 
     bufferSize("buffer_size", 1024*16),
+    /** 传输层: nio/epoll/io_uring/auto **/
+    transport("transport", "nio"),
+    /** epoll触发模式: edge/level **/
+    epollMode("epollMode", "edge"),
+    tcpQuickAck("tcpQuickAck", false),
+    /** SO_BUSY_POLL，单位微秒，0表示关闭 **/
+    busyPoll("busyPoll", 0),
+    /** 支持的最高协议版本，连接建立时与对端协商，1表示只使用v1 **/
+    codecVersion("codecVersion", 2),
+    /** v2帧消息体压缩方式: deflate/lz4/snappy/zstd，为空表示不压缩 **/
+    compression("compression", ""),
+    /** 消息体达到该字节数才压缩 **/
+    compressThreshold("compressThreshold", 4096),
+    /** 流式调用时消费端最多缓存的元素数，即授予服务端的初始信用 **/
+    streamWindow("streamWindow", 64),
+    /** 连接写缓冲区的高低水位(字节)，超过高水位后不可写，降到低水位以下恢复 **/
+    writeBufferHighWaterMark("writeBufferHighWaterMark", 64*1024),
+    writeBufferLowWaterMark("writeBufferLowWaterMark", 32*1024),
+    /** 每个连接最多等待响应的请求数，0表示不限制 **/
+    maxInFlight("maxInFlight", 0),
+    /** 连接饱和(不可写或达到maxInFlight)时的策略: wait(在超时时间内等待)/failfast **/
+    backpressure("backpressure", "wait"),
+    /** 服务端监听队列长度 **/
+    backlog("backlog", 128),
+    /** 服务端监听socket数，大于1时需要epoll/io_uring，通过SO_REUSEPORT绑定同一端口 **/
+    acceptors("acceptors", 1),
+    /** 编解码时直接读写ByteBuf，避免中间byte[]拷贝，v1、v2帧都生效 **/
+    zeroCopy("zeroCopy", false),
+    /** 客户端连接池 **/
+    poolType("poolType", "roundrobin"),
+    minPoolSize("minPoolSize", 1),
+    maxPoolSize("maxPoolSize", 1),
+    /** 选中连接的等待请求数达到该值时扩容 **/
+    poolGrowThreshold("poolGrowThreshold", 32),
+    /** 空闲超过该时间(ms)的多余连接被回收 **/
+    poolIdleTimeout("poolIdleTimeout", 60*1000),
+    /** 心跳间隔(ms)，0表示关闭；客户端在协议版本协商到v2后才发送，服务端只关闭发送过心跳的空闲连接 **/
+    heartbeat("heartbeat", 10*1000),
+    /** 批量写：业务线程的写请求交给IO线程合并flush **/
+    writeBatch("writeBatch", false),
+    /** 每次flush最多的消息数 **/
+    writeBatchSize("writeBatchSize", 64),
+    /** 写出前等待的微秒数，0表示在IO线程下一次执行任务时写出 **/
+    writeBatchDelay("writeBatchDelay", 0),
 
     loadBalance("loadbalance", "random"),
     haStrategy("haStrategy", "failfast"),
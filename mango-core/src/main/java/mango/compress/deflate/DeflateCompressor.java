@@ -0,0 +1,75 @@
+package mango.compress.deflate;
+
+import mango.codec.Compressor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * JDK自带的deflate压缩，不需要额外依赖
+ * 压缩级别通过-Dmango.compress.deflate.level设置，默认最快
+ * @author Ricky Fung
+ */
+public class DeflateCompressor implements Compressor {
+
+    private static final int LEVEL = Integer.getInteger("mango.compress.deflate.level", Deflater.BEST_SPEED);
+
+    // Deflater/Inflater持有本地内存，每个线程复用一个
+    private final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(LEVEL, true);
+        }
+    };
+    private final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+        byte[] buffer = new byte[Math.min(length + 64, 8192)];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        // nowrap模式需要在输入末尾多给一个字节
+        byte[] input = new byte[length + 1];
+        System.arraycopy(data, offset, input, 0, length);
+        inflater.setInput(input);
+        byte[] result = new byte[originalLength];
+        try {
+            int n = 0;
+            while (n < originalLength && !inflater.finished()) {
+                int read = inflater.inflate(result, n, originalLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != originalLength) {
+                throw new IOException("deflate data corrupted, expect " + originalLength + " bytes, got " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("deflate data corrupted", e);
+        }
+        return result;
+    }
+}
@@ -26,6 +26,52 @@ public class ProtocolConfig extends AbstractConfig {
     private Integer payload;
     //心跳间隔
     private Integer heartbeat;
+    //编解码时是否直接读写ByteBuf
+    private Boolean zeroCopy;
+    //传输层类型: nio/epoll/io_uring/auto
+    private String transport;
+    //是否批量写，以及每次flush的最大消息数和等待时间(微秒)
+    private Boolean writeBatch;
+    private Integer writeBatchSize;
+    private Integer writeBatchDelay;
+    //支持的最高帧头版本: 1/2
+    private Integer codecVersion;
+    //消息体压缩方式: deflate/lz4/snappy/zstd，以及压缩的最小字节数
+    private String compression;
+    private Integer compressThreshold;
+    //流式调用时消费端最多缓存的元素数
+    private Integer streamWindow;
+    //写缓冲区高低水位(字节)
+    private Integer writeBufferHighWaterMark;
+    private Integer writeBufferLowWaterMark;
+    //每个连接最多等待响应的请求数，以及连接饱和时的策略: wait/failfast
+    private Integer maxInFlight;
+    private String backpressure;
+    //epoll触发模式: edge/level
+    private String epollMode;
+    //是否开启TCP_QUICKACK，仅epoll
+    private Boolean tcpQuickAck;
+    //SO_BUSY_POLL(微秒)，0表示关闭，仅epoll
+    private Integer busyPoll;
+    //服务端监听队列长度
+    private Integer backlog;
+    //服务端监听socket数，大于1时需要epoll/io_uring
+    private Integer acceptors;
+    //服务端请求派发方式: direct/pool/method/ringbuffer
+    private String dispatcher;
+    //业务线程池队列长度，队列满时返回BUSY
+    private Integer workerQueueSize;
+    //CoDel目标排队时间(ms)，0表示关闭，以及统计周期(ms)
+    private Integer codelTarget;
+    private Integer codelInterval;
+    //积压时是否优先处理最新的请求
+    private Boolean adaptiveLifo;
+    //业务处理是否使用虚拟线程: auto/true/false
+    private String virtualThreads;
+    //ringbuffer派发的工作线程数(0表示CPU核数)、每个线程的环形队列长度，以及空闲等待策略: busyspin/yield/park
+    private Integer ringBufferWorkers;
+    private Integer ringBufferSize;
+    private String waitStrategy;
 
     private Boolean isDefault = Boolean.TRUE;
 
@@ -125,6 +171,222 @@ public class ProtocolConfig extends AbstractConfig {
         this.heartbeat = heartbeat;
     }
 
+    public Boolean getZeroCopy() {
+        return zeroCopy;
+    }
+
+    public void setZeroCopy(Boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    public Boolean getWriteBatch() {
+        return writeBatch;
+    }
+
+    public void setWriteBatch(Boolean writeBatch) {
+        this.writeBatch = writeBatch;
+    }
+
+    public Integer getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public void setWriteBatchSize(Integer writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    public Integer getWriteBatchDelay() {
+        return writeBatchDelay;
+    }
+
+    public void setWriteBatchDelay(Integer writeBatchDelay) {
+        this.writeBatchDelay = writeBatchDelay;
+    }
+
+    public Integer getCodecVersion() {
+        return codecVersion;
+    }
+
+    public void setCodecVersion(Integer codecVersion) {
+        this.codecVersion = codecVersion;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public Integer getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public void setCompressThreshold(Integer compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    public Integer getStreamWindow() {
+        return streamWindow;
+    }
+
+    public void setStreamWindow(Integer streamWindow) {
+        this.streamWindow = streamWindow;
+    }
+
+    public Integer getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public void setWriteBufferHighWaterMark(Integer writeBufferHighWaterMark) {
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    public Integer getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public void setWriteBufferLowWaterMark(Integer writeBufferLowWaterMark) {
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
+
+    public Integer getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(Integer maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public String getBackpressure() {
+        return backpressure;
+    }
+
+    public void setBackpressure(String backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    public String getEpollMode() {
+        return epollMode;
+    }
+
+    public void setEpollMode(String epollMode) {
+        this.epollMode = epollMode;
+    }
+
+    public Boolean getTcpQuickAck() {
+        return tcpQuickAck;
+    }
+
+    public void setTcpQuickAck(Boolean tcpQuickAck) {
+        this.tcpQuickAck = tcpQuickAck;
+    }
+
+    public Integer getBusyPoll() {
+        return busyPoll;
+    }
+
+    public void setBusyPoll(Integer busyPoll) {
+        this.busyPoll = busyPoll;
+    }
+
+    public Integer getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(Integer backlog) {
+        this.backlog = backlog;
+    }
+
+    public Integer getAcceptors() {
+        return acceptors;
+    }
+
+    public void setAcceptors(Integer acceptors) {
+        this.acceptors = acceptors;
+    }
+
+    public String getDispatcher() {
+        return dispatcher;
+    }
+
+    public void setDispatcher(String dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public Integer getWorkerQueueSize() {
+        return workerQueueSize;
+    }
+
+    public void setWorkerQueueSize(Integer workerQueueSize) {
+        this.workerQueueSize = workerQueueSize;
+    }
+
+    public Integer getCodelTarget() {
+        return codelTarget;
+    }
+
+    public void setCodelTarget(Integer codelTarget) {
+        this.codelTarget = codelTarget;
+    }
+
+    public Integer getCodelInterval() {
+        return codelInterval;
+    }
+
+    public void setCodelInterval(Integer codelInterval) {
+        this.codelInterval = codelInterval;
+    }
+
+    public Boolean getAdaptiveLifo() {
+        return adaptiveLifo;
+    }
+
+    public void setAdaptiveLifo(Boolean adaptiveLifo) {
+        this.adaptiveLifo = adaptiveLifo;
+    }
+
+    public String getVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(String virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public Integer getRingBufferWorkers() {
+        return ringBufferWorkers;
+    }
+
+    public void setRingBufferWorkers(Integer ringBufferWorkers) {
+        this.ringBufferWorkers = ringBufferWorkers;
+    }
+
+    public Integer getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    public void setRingBufferSize(Integer ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public String getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(String waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
     public Boolean isDefault() {
         return isDefault;
     }
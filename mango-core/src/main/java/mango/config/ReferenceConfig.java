@@ -84,6 +84,66 @@ public class ReferenceConfig<T> extends AbstractInterfaceConfig {
             map.put(URLParam.requestTimeout.getName(), String.valueOf(getTimeout()));
             map.put(URLParam.timestamp.getName(), String.valueOf(System.currentTimeMillis()));
             map.put(URLParam.check.getName(), isCheck().toString());
+            if (protocol.getZeroCopy() != null) {
+                map.put(URLParam.zeroCopy.getName(), protocol.getZeroCopy().toString());
+            }
+            if (StringUtils.isNotEmpty(protocol.getPoolType())) {
+                map.put(URLParam.poolType.getName(), protocol.getPoolType());
+            }
+            if (protocol.getMinPoolSize() != null) {
+                map.put(URLParam.minPoolSize.getName(), protocol.getMinPoolSize().toString());
+            }
+            if (protocol.getMaxPoolSize() != null) {
+                map.put(URLParam.maxPoolSize.getName(), protocol.getMaxPoolSize().toString());
+            }
+            if (protocol.getHeartbeat() != null) {
+                map.put(URLParam.heartbeat.getName(), protocol.getHeartbeat().toString());
+            }
+            if (StringUtils.isNotEmpty(protocol.getTransport())) {
+                map.put(URLParam.transport.getName(), protocol.getTransport());
+            }
+            if (protocol.getWriteBatch() != null) {
+                map.put(URLParam.writeBatch.getName(), protocol.getWriteBatch().toString());
+            }
+            if (protocol.getWriteBatchSize() != null) {
+                map.put(URLParam.writeBatchSize.getName(), protocol.getWriteBatchSize().toString());
+            }
+            if (protocol.getWriteBatchDelay() != null) {
+                map.put(URLParam.writeBatchDelay.getName(), protocol.getWriteBatchDelay().toString());
+            }
+            if (protocol.getCodecVersion() != null) {
+                map.put(URLParam.codecVersion.getName(), protocol.getCodecVersion().toString());
+            }
+            if (StringUtils.isNotEmpty(protocol.getCompression())) {
+                map.put(URLParam.compression.getName(), protocol.getCompression());
+            }
+            if (protocol.getCompressThreshold() != null) {
+                map.put(URLParam.compressThreshold.getName(), protocol.getCompressThreshold().toString());
+            }
+            if (protocol.getStreamWindow() != null) {
+                map.put(URLParam.streamWindow.getName(), protocol.getStreamWindow().toString());
+            }
+            if (protocol.getWriteBufferHighWaterMark() != null) {
+                map.put(URLParam.writeBufferHighWaterMark.getName(), protocol.getWriteBufferHighWaterMark().toString());
+            }
+            if (protocol.getWriteBufferLowWaterMark() != null) {
+                map.put(URLParam.writeBufferLowWaterMark.getName(), protocol.getWriteBufferLowWaterMark().toString());
+            }
+            if (protocol.getMaxInFlight() != null) {
+                map.put(URLParam.maxInFlight.getName(), protocol.getMaxInFlight().toString());
+            }
+            if (StringUtils.isNotEmpty(protocol.getBackpressure())) {
+                map.put(URLParam.backpressure.getName(), protocol.getBackpressure());
+            }
+            if (StringUtils.isNotEmpty(protocol.getEpollMode())) {
+                map.put(URLParam.epollMode.getName(), protocol.getEpollMode());
+            }
+            if (protocol.getTcpQuickAck() != null) {
+                map.put(URLParam.tcpQuickAck.getName(), protocol.getTcpQuickAck().toString());
+            }
+            if (protocol.getBusyPoll() != null) {
+                map.put(URLParam.busyPoll.getName(), protocol.getBusyPoll().toString());
+            }
 
             String hostAddress = getLocalHostAddress(protocol);
             Integer port = getProtocolPort(protocol);
@@ -32,6 +32,12 @@ public class ServiceConfig<T> extends AbstractInterfaceConfig {
     private ArrayListMultimap<URL, URL> registeredUrls = ArrayListMultimap.create();
     private Class<T> interfaceClass;
     private T ref;
+    // 服务独占的隔离线程池线程数
+    private Integer bulkheadThreads;
+    // 隔离线程池队列长度
+    private Integer bulkheadQueueSize;
+    // 方法级隔离线程池，格式为 方法名:线程数[:队列长度]，多个用逗号分隔
+    private String bulkheadMethods;
 
     protected synchronized void export() {
         if (exported) {
@@ -85,6 +91,93 @@ public class ServiceConfig<T> extends AbstractInterfaceConfig {
         map.put(URLParam.requestTimeout.getName(), timeout!=null ? timeout.toString() : URLParam.requestTimeout.getValue());
         map.put(URLParam.side.getName(), Constants.PROVIDER);
         map.put(URLParam.timestamp.getName(), String.valueOf(System.currentTimeMillis()));
+        if (protocol.getZeroCopy() != null) {
+            map.put(URLParam.zeroCopy.getName(), protocol.getZeroCopy().toString());
+        }
+        if (protocol.getHeartbeat() != null) {
+            map.put(URLParam.heartbeat.getName(), protocol.getHeartbeat().toString());
+        }
+        if (StringUtils.isNotEmpty(protocol.getTransport())) {
+            map.put(URLParam.transport.getName(), protocol.getTransport());
+        }
+        if (protocol.getWriteBatch() != null) {
+            map.put(URLParam.writeBatch.getName(), protocol.getWriteBatch().toString());
+        }
+        if (protocol.getWriteBatchSize() != null) {
+            map.put(URLParam.writeBatchSize.getName(), protocol.getWriteBatchSize().toString());
+        }
+        if (protocol.getWriteBatchDelay() != null) {
+            map.put(URLParam.writeBatchDelay.getName(), protocol.getWriteBatchDelay().toString());
+        }
+        if (protocol.getCodecVersion() != null) {
+            map.put(URLParam.codecVersion.getName(), protocol.getCodecVersion().toString());
+        }
+        if (StringUtils.isNotEmpty(protocol.getCompression())) {
+            map.put(URLParam.compression.getName(), protocol.getCompression());
+        }
+        if (protocol.getCompressThreshold() != null) {
+            map.put(URLParam.compressThreshold.getName(), protocol.getCompressThreshold().toString());
+        }
+        if (protocol.getStreamWindow() != null) {
+            map.put(URLParam.streamWindow.getName(), protocol.getStreamWindow().toString());
+        }
+        if (protocol.getWriteBufferHighWaterMark() != null) {
+            map.put(URLParam.writeBufferHighWaterMark.getName(), protocol.getWriteBufferHighWaterMark().toString());
+        }
+        if (protocol.getWriteBufferLowWaterMark() != null) {
+            map.put(URLParam.writeBufferLowWaterMark.getName(), protocol.getWriteBufferLowWaterMark().toString());
+        }
+        if (StringUtils.isNotEmpty(protocol.getEpollMode())) {
+            map.put(URLParam.epollMode.getName(), protocol.getEpollMode());
+        }
+        if (protocol.getTcpQuickAck() != null) {
+            map.put(URLParam.tcpQuickAck.getName(), protocol.getTcpQuickAck().toString());
+        }
+        if (protocol.getBusyPoll() != null) {
+            map.put(URLParam.busyPoll.getName(), protocol.getBusyPoll().toString());
+        }
+        if (protocol.getBacklog() != null) {
+            map.put(URLParam.backlog.getName(), protocol.getBacklog().toString());
+        }
+        if (protocol.getAcceptors() != null) {
+            map.put(URLParam.acceptors.getName(), protocol.getAcceptors().toString());
+        }
+        if (StringUtils.isNotEmpty(protocol.getDispatcher())) {
+            map.put(URLParam.dispatcher.getName(), protocol.getDispatcher());
+        }
+        if (protocol.getWorkerQueueSize() != null) {
+            map.put(URLParam.workerQueueSize.getName(), protocol.getWorkerQueueSize().toString());
+        }
+        if (protocol.getCodelTarget() != null) {
+            map.put(URLParam.codelTarget.getName(), protocol.getCodelTarget().toString());
+        }
+        if (protocol.getCodelInterval() != null) {
+            map.put(URLParam.codelInterval.getName(), protocol.getCodelInterval().toString());
+        }
+        if (protocol.getAdaptiveLifo() != null) {
+            map.put(URLParam.adaptiveLifo.getName(), protocol.getAdaptiveLifo().toString());
+        }
+        if (StringUtils.isNotEmpty(protocol.getVirtualThreads())) {
+            map.put(URLParam.virtualThreads.getName(), protocol.getVirtualThreads());
+        }
+        if (protocol.getRingBufferWorkers() != null) {
+            map.put(URLParam.ringBufferWorkers.getName(), protocol.getRingBufferWorkers().toString());
+        }
+        if (protocol.getRingBufferSize() != null) {
+            map.put(URLParam.ringBufferSize.getName(), protocol.getRingBufferSize().toString());
+        }
+        if (StringUtils.isNotEmpty(protocol.getWaitStrategy())) {
+            map.put(URLParam.waitStrategy.getName(), protocol.getWaitStrategy());
+        }
+        if (bulkheadThreads != null) {
+            map.put(URLParam.bulkheadThreads.getName(), bulkheadThreads.toString());
+        }
+        if (bulkheadQueueSize != null) {
+            map.put(URLParam.bulkheadQueueSize.getName(), bulkheadQueueSize.toString());
+        }
+        if (StringUtils.isNotEmpty(bulkheadMethods)) {
+            map.put(URLParam.bulkheadMethods.getName(), bulkheadMethods);
+        }
 
         // 根据一些列参数构建URL
         URL serviceUrl = new URL(protocolName, hostAddress, port, interfaceClass.getName(), map);
@@ -114,6 +207,30 @@ public class ServiceConfig<T> extends AbstractInterfaceConfig {
         this.interfaceClass = interfaceClass;
     }
 
+    public Integer getBulkheadThreads() {
+        return bulkheadThreads;
+    }
+
+    public void setBulkheadThreads(Integer bulkheadThreads) {
+        this.bulkheadThreads = bulkheadThreads;
+    }
+
+    public Integer getBulkheadQueueSize() {
+        return bulkheadQueueSize;
+    }
+
+    public void setBulkheadQueueSize(Integer bulkheadQueueSize) {
+        this.bulkheadQueueSize = bulkheadQueueSize;
+    }
+
+    public String getBulkheadMethods() {
+        return bulkheadMethods;
+    }
+
+    public void setBulkheadMethods(String bulkheadMethods) {
+        this.bulkheadMethods = bulkheadMethods;
+    }
+
     public boolean isExported() {
         return exported;
     }
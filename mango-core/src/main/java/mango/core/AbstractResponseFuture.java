@@ -28,7 +28,7 @@ public abstract class AbstractResponseFuture<T> implements ResponseFuture<T> {
 
     @Override
     public boolean isTimeout() {
-        // 如果创建时的时间 + 超时时间 大于当前时间就说明超时了
-        return createTime + timeoutInMillis > System.currentTimeMillis();
+        // 当前时间距创建时间超过了超时时间就说明超时了
+        return System.currentTimeMillis() - createTime > timeoutInMillis;
     }
 }
@@ -22,6 +22,8 @@ public class DefaultResponse implements Serializable, Response {
     private Map<String, String> attachments;
 
     private long processTime;
+    // 对应的服务方法，只在本端用于统计，不序列化
+    private transient String serviceMethod;
 
     public void setRequestId(Long requestId) {
         this.requestId = requestId;
@@ -85,4 +87,12 @@ public class DefaultResponse implements Serializable, Response {
     public long getProcessTime() {
         return processTime;
     }
+
+    public String getServiceMethod() {
+        return serviceMethod;
+    }
+
+    public void setServiceMethod(String serviceMethod) {
+        this.serviceMethod = serviceMethod;
+    }
 }
@@ -1,20 +1,38 @@
 package mango.core;
 
+import io.netty.util.Timeout;
 import mango.exception.RpcFrameworkException;
+import mango.exception.RpcTimeoutException;
 
 import java.io.IOException;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * 默认响应实体类
+ * 完成和等待都不使用synchronized，通过CAS设置结果、CountDownLatch(AQS)等待，
+ * 虚拟线程在get()上阻塞时会从载体线程卸载，不会pin住载体线程
  * @author Ricky Fung
  */
 public class DefaultResponseFuture<T> extends AbstractResponseFuture<T> {
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<DefaultResponseFuture> COMPLETING_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(DefaultResponseFuture.class, "completing");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultResponseFuture, CountDownLatch> LATCH_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultResponseFuture.class, CountDownLatch.class, "latch");
+
     private volatile T result;
     private volatile Throwable err;
-    private CountDownLatch latch;
+    // 只有第一个把completing从0改为1的线程可以设置结果
+    private volatile int completing;
+    // 有线程等待时才创建
+    private volatile CountDownLatch latch;
+    // 超时检测任务，完成后取消
+    private volatile Timeout timeoutTask;
 
     public DefaultResponseFuture(long timeoutInMillis) {
         super(timeoutInMillis);
@@ -31,6 +49,13 @@ public class DefaultResponseFuture<T> extends AbstractResponseFuture<T> {
         return returnResult();
     }
 
+    public void setTimeoutTask(Timeout timeoutTask) {
+        this.timeoutTask = timeoutTask;
+        if (isDone()) {
+            timeoutTask.cancel();
+        }
+    }
+
     @Override
     public boolean isSuccess() {
         return isDone() && err==null;
@@ -38,31 +63,22 @@ public class DefaultResponseFuture<T> extends AbstractResponseFuture<T> {
 
     @Override
     public void setResult(T result) {
-        synchronized(this) {
-            if(!this.isDone()) {
-                this.result = result;
-                this.state = FutureState.DONE;
-                if(this.latch != null) {
-                    this.latch.countDown();
-                }
-            }
+        if(COMPLETING_UPDATER.compareAndSet(this, 0, 1)) {
+            this.result = result;
+            complete();
         }
     }
 
     @Override
     public void setFailure(Throwable throwable) {
-        if(!(throwable instanceof IOException) && !(throwable instanceof SecurityException)) {
+        if(!(throwable instanceof IOException) && !(throwable instanceof SecurityException)
+                && !(throwable instanceof RpcTimeoutException)) {
             throwable = new IOException(throwable);
         }
 
-        synchronized(this) {
-            if(!this.isDone()) {
-                this.err = throwable;
-                this.state = FutureState.DONE;
-                if(this.latch != null) {
-                    this.latch.countDown();
-                }
-            }
+        if(COMPLETING_UPDATER.compareAndSet(this, 0, 1)) {
+            this.err = throwable;
+            complete();
         }
     }
 
@@ -70,6 +86,8 @@ public class DefaultResponseFuture<T> extends AbstractResponseFuture<T> {
         if(this.err != null) {
             if(this.state == FutureState.CANCELLED) {
                 throw new CancellationException();
+            } else if(this.err instanceof RpcTimeoutException) {
+                throw (RpcTimeoutException) this.err;
             } else {
                 throw new RpcFrameworkException(this.err);
             }
@@ -78,16 +96,31 @@ public class DefaultResponseFuture<T> extends AbstractResponseFuture<T> {
         }
     }
 
+    private void complete() {
+        // state的volatile写发布结果，之后再读latch：等待方先发布latch再检查state，二者至少有一方看到对方
+        this.state = FutureState.DONE;
+        CountDownLatch waiter = this.latch;
+        if(waiter != null) {
+            waiter.countDown();
+        }
+        cancelTimeoutTask();
+    }
+
+    private void cancelTimeoutTask() {
+        Timeout task = this.timeoutTask;
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
     private boolean prepareForWait() {
-        synchronized(this) {
-            if(this.isDone()) {
-                return false;
-            } else {
-                if(this.latch == null) {
-                    this.latch = new CountDownLatch(1);
-                }
-                return true;
-            }
+        if(this.isDone()) {
+            return false;
+        }
+        if(this.latch == null) {
+            LATCH_UPDATER.compareAndSet(this, null, new CountDownLatch(1));
         }
+        // 发布latch后再次检查，避免完成方在发布之前已经读过latch
+        return !this.isDone();
     }
 }
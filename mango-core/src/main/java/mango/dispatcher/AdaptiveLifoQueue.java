@@ -0,0 +1,36 @@
+package mango.dispatcher;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应LIFO队列
+ * 积压超过阈值时优先处理最新的请求，较早的请求大概率已在客户端超时，先处理新请求能让更多请求按时完成
+ * @author Ricky Fung
+ */
+public class AdaptiveLifoQueue extends LinkedBlockingDeque<Runnable> {
+
+    private static final long serialVersionUID = -3571608127372416418L;
+
+    private final int lifoThreshold;
+
+    public AdaptiveLifoQueue(int capacity, int lifoThreshold) {
+        super(capacity);
+        this.lifoThreshold = lifoThreshold;
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        return size() > lifoThreshold ? takeLast() : takeFirst();
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return size() > lifoThreshold ? pollLast(timeout, unit) : pollFirst(timeout, unit);
+    }
+
+    @Override
+    public Runnable poll() {
+        return size() > lifoThreshold ? pollLast() : pollFirst();
+    }
+}
@@ -0,0 +1,87 @@
+package mango.dispatcher;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import mango.metrics.Counter;
+import mango.metrics.Gauge;
+import mango.metrics.Metrics;
+import mango.util.Constants;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务或方法独占的隔离线程池，慢服务占满自己的线程和队列后只会拒绝自己的请求
+ * 固定使用平台线程，线程数即并发上限；饱和度通过以下指标上报：
+ * server.bulkhead.{port}.{name}.active 执行中的请求数
+ * server.bulkhead.{port}.{name}.queued 排队的请求数
+ * server.bulkhead.{port}.{name}.saturation 线程占用百分比
+ * server.bulkhead.{port}.{name}.rejected 队列满被拒绝的请求数
+ * @author Ricky Fung
+ */
+public class Bulkhead implements Executor {
+
+    private final String metricPrefix;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+    private final int maxThreads;
+    private volatile boolean metricsRegistered;
+
+    /**
+     * @param port 服务端口，同一进程内多个服务端的指标互不覆盖
+     */
+    public Bulkhead(int port, String name, int threads, BlockingQueue<Runnable> queue) {
+        this.metricPrefix = "server.bulkhead." + port + "." + name;
+        this.maxThreads = threads;
+        this.executor = new ThreadPoolExecutor(threads, threads, 120, TimeUnit.SECONDS, queue,
+                new DefaultThreadFactory(String.format("%s-bulkhead-%s", Constants.FRAMEWORK_NAME, name)));
+        this.rejected = Metrics.counter(metricPrefix + ".rejected");
+    }
+
+    /**
+     * 注册饱和度指标，并发创建时只由最终被使用的实例调用
+     */
+    public void registerMetrics() {
+        Metrics.registerGauge(metricPrefix + ".active", new Gauge() {
+            @Override
+            public long getValue() {
+                return executor.getActiveCount();
+            }
+        });
+        Metrics.registerGauge(metricPrefix + ".queued", new Gauge() {
+            @Override
+            public long getValue() {
+                return executor.getQueue().size();
+            }
+        });
+        Metrics.registerGauge(metricPrefix + ".saturation", new Gauge() {
+            @Override
+            public long getValue() {
+                return executor.getActiveCount() * 100L / maxThreads;
+            }
+        });
+        metricsRegistered = true;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.inc();
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        if (!metricsRegistered) {
+            return;
+        }
+        Metrics.removeGauge(metricPrefix + ".active");
+        Metrics.removeGauge(metricPrefix + ".queued");
+        Metrics.removeGauge(metricPrefix + ".saturation");
+    }
+}
@@ -0,0 +1,53 @@
+package mango.dispatcher;
+
+import mango.metrics.Counter;
+import mango.metrics.Metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CoDel过载控制
+ * 每个interval统计一次最小排队时间，超过target说明队列持续积压（而不是突发），
+ * 此时排队时间超过2*target的请求直接拒绝，使排队时间保持在有限范围内
+ * @author Ricky Fung
+ */
+public class CoDel {
+
+    private final long target;
+    private final long interval;
+    private final Counter dropCounter = Metrics.counter("server.codel.dropped");
+
+    // 以下字段只用于估算，允许并发下的少量误差
+    private volatile long intervalEnd;
+    private volatile long minDelay = Long.MAX_VALUE;
+    private volatile boolean overloaded;
+
+    public CoDel(long targetMillis, long intervalMillis) {
+        this.target = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.interval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.intervalEnd = System.nanoTime() + interval;
+    }
+
+    /**
+     * @param delay 排队时间(ns)
+     */
+    public boolean shouldDrop(long delay) {
+        long now = System.nanoTime();
+        if (now - intervalEnd > 0) {
+            overloaded = minDelay > target;
+            minDelay = delay;
+            intervalEnd = now + interval;
+        } else if (delay < minDelay) {
+            minDelay = delay;
+        }
+        if (overloaded && delay > 2 * target) {
+            dropCounter.inc();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+}
@@ -0,0 +1,25 @@
+package mango.dispatcher;
+
+import mango.common.URL;
+import mango.core.Request;
+import mango.rpc.MessageRouter;
+
+/**
+ * 所有请求直接在IO线程上执行
+ * @author Ricky Fung
+ */
+public class DirectDispatcher implements Dispatcher {
+
+    @Override
+    public void init(URL url, MessageRouter router) {
+    }
+
+    @Override
+    public void dispatch(Request request, DispatchTask task) {
+        task.run();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
@@ -0,0 +1,35 @@
+package mango.dispatcher;
+
+import java.lang.annotation.*;
+
+/**
+ * 指定服务方法的派发方式，可以标注在接口方法或接口上，方法上的优先
+ * @author Ricky Fung
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Dispatch {
+
+    DispatchMode value() default DispatchMode.POOL;
+
+    /**
+     * ISOLATED方式下独占线程池的线程数
+     */
+    int threads() default 1;
+
+    /**
+     * ORDERED方式下路由键在参数中的下标，小于0时使用keyAttachment
+     */
+    int keyArg() default -1;
+
+    /**
+     * ORDERED方式下路由键的attachment名
+     */
+    String keyAttachment() default "";
+
+    /**
+     * ORDERED方式下的分段数，路由键哈希到同一分段的请求串行执行
+     */
+    int stripes() default 256;
+}
@@ -0,0 +1,16 @@
+package mango.dispatcher;
+
+/**
+ * 请求派发方式
+ * @author Ricky Fung
+ */
+public enum DispatchMode {
+    /** 直接在IO线程上执行，只适用于不阻塞的轻量方法 **/
+    DIRECT,
+    /** 在共享业务线程池中执行 **/
+    POOL,
+    /** 在方法独占的线程池中执行，慢方法不会占满共享线程池 **/
+    ISOLATED,
+    /** 按路由键分段串行执行，同一个键的请求按到达顺序执行，不同键并行 **/
+    ORDERED
+}
@@ -0,0 +1,36 @@
+package mango.dispatcher;
+
+/**
+ * 服务端请求处理任务
+ * 记录入队时间，开启CoDel时排队过久的任务直接拒绝而不执行
+ * @author Ricky Fung
+ */
+public abstract class DispatchTask implements Runnable {
+
+    private final long createTime = System.nanoTime();
+    private volatile CoDel codel;
+
+    void setCoDel(CoDel codel) {
+        this.codel = codel;
+    }
+
+    @Override
+    public final void run() {
+        CoDel codel = this.codel;
+        if (codel != null && codel.shouldDrop(System.nanoTime() - createTime)) {
+            reject();
+        } else {
+            process();
+        }
+    }
+
+    /**
+     * 处理请求
+     */
+    protected abstract void process();
+
+    /**
+     * 拒绝请求，返回BUSY响应
+     */
+    public abstract void reject();
+}
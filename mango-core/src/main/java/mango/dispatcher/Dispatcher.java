@@ -0,0 +1,24 @@
+package mango.dispatcher;
+
+import mango.common.URL;
+import mango.core.Request;
+import mango.core.extension.SPI;
+import mango.core.extension.Scope;
+import mango.rpc.MessageRouter;
+
+/**
+ * 服务端请求派发，决定请求在哪个线程上执行
+ * @author Ricky Fung
+ */
+@SPI(value = "method", scope = Scope.PROTOTYPE)
+public interface Dispatcher {
+
+    void init(URL url, MessageRouter router);
+
+    /**
+     * 派发请求处理任务，线程池已满时抛出RejectedExecutionException
+     */
+    void dispatch(Request request, DispatchTask task);
+
+    void shutdown();
+}
@@ -0,0 +1,187 @@
+package mango.dispatcher;
+
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.Request;
+import mango.rpc.MessageRouter;
+import mango.rpc.Provider;
+import mango.util.FrameworkUtils;
+import mango.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 按服务配置的隔离线程池(bulkhead)和方法上的{@link Dispatch}注解派发，都没有时使用共享业务线程池
+ * 优先级：方法级bulkhead配置 > 方法注解 > 服务级bulkhead配置 > 接口注解
+ * @author Ricky Fung
+ */
+public class MethodDispatcher extends PoolDispatcher {
+
+    // 直接在当前线程执行
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private MessageRouter router;
+    private int port;
+    // 方法签名 -> 执行器
+    private final ConcurrentHashMap<String, Executor> executors = new ConcurrentHashMap<>();
+    // 隔离线程池，服务级的被该服务所有方法共享
+    private final ConcurrentHashMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    // 分段串行执行器，标注在接口上时被该服务所有方法共享
+    private final ConcurrentHashMap<String, OrderedExecutor> orderedExecutors = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(URL url, MessageRouter router) {
+        super.init(url, router);
+        this.router = router;
+        this.port = url.getPort();
+    }
+
+    @Override
+    public void dispatch(Request request, DispatchTask task) {
+        String key = methodKey(request);
+        Executor executor = executors.get(key);
+        if (executor == null) {
+            Provider<?> provider = router.getProvider(request);
+            Method method = provider != null ? findMethod(provider.getInterface(), request) : null;
+            if (method == null) {
+                // 服务或方法不存在时由provider返回异常；key来自客户端，不缓存以免无限增长
+                executor = pool;
+            } else {
+                executor = createExecutor(key, provider, method);
+                Executor old = executors.putIfAbsent(key, executor);
+                if (old != null) {
+                    executor = old;
+                }
+            }
+        }
+        if (executor != DIRECT) {
+            task.setCoDel(codel);
+        }
+        if (executor instanceof OrderedExecutor) {
+            ((OrderedExecutor) executor).execute(request, task);
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            bulkhead.shutdown();
+        }
+    }
+
+    /**
+     * 只为服务接口上存在的方法创建执行器
+     */
+    private Executor createExecutor(String key, Provider<?> provider, Method method) {
+        URL url = provider.getUrl();
+        String serviceKey = FrameworkUtils.getServiceKey(url);
+
+        int[] methodBulkhead = findMethodBulkhead(url, method.getName());
+        if (methodBulkhead != null) {
+            return getBulkhead(serviceKey + "#" + method.getName(), methodBulkhead[0], methodBulkhead[1]);
+        }
+        Class<?> clz = provider.getInterface();
+        Dispatch dispatch = method.getAnnotation(Dispatch.class);
+        String name = key;
+        if (dispatch == null) {
+            int threads = url.getIntParameter(URLParam.bulkheadThreads.getName(), URLParam.bulkheadThreads.getIntValue());
+            if (threads > 0) {
+                return getBulkhead(serviceKey, threads,
+                        url.getIntParameter(URLParam.bulkheadQueueSize.getName(), URLParam.bulkheadQueueSize.getIntValue()));
+            }
+            dispatch = clz.getAnnotation(Dispatch.class);
+            name = serviceKey;
+        }
+        if (dispatch == null || dispatch.value() == DispatchMode.POOL) {
+            return pool;
+        }
+        if (dispatch.value() == DispatchMode.DIRECT) {
+            return DIRECT;
+        }
+        if (dispatch.value() == DispatchMode.ORDERED) {
+            return getOrderedExecutor(name, dispatch);
+        }
+        return getBulkhead(key, dispatch.threads(), queueSize);
+    }
+
+    private Bulkhead getBulkhead(String name, int threads, int queueSize) {
+        Bulkhead bulkhead = bulkheads.get(name);
+        if (bulkhead == null) {
+            Bulkhead created = new Bulkhead(port, name, Math.max(1, threads), newQueue(Math.max(1, queueSize)));
+            bulkhead = bulkheads.putIfAbsent(name, created);
+            if (bulkhead == null) {
+                bulkhead = created;
+                bulkhead.registerMetrics();
+            } else {
+                created.shutdown();
+            }
+        }
+        return bulkhead;
+    }
+
+    private OrderedExecutor getOrderedExecutor(String name, Dispatch dispatch) {
+        OrderedExecutor executor = orderedExecutors.get(name);
+        if (executor == null) {
+            // 在共享线程池上串行，每个分段同时只占用一个线程
+            OrderedExecutor created = new OrderedExecutor(pool, dispatch.stripes(), queueSize,
+                    dispatch.keyArg(), dispatch.keyAttachment());
+            executor = orderedExecutors.putIfAbsent(name, created);
+            if (executor == null) {
+                executor = created;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 解析bulkheadMethods配置，格式为 方法名:线程数[:队列长度]，多个方法用逗号分隔
+     * @return {线程数, 队列长度}，该方法没有配置时返回null
+     */
+    private static int[] findMethodBulkhead(URL url, String methodName) {
+        String config = url.getParameter(URLParam.bulkheadMethods.getName(), URLParam.bulkheadMethods.getValue());
+        if (StringUtils.isBlank(config)) {
+            return null;
+        }
+        for (String item : config.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length < 2 || !parts[0].equals(methodName)) {
+                continue;
+            }
+            int threads = Integer.parseInt(parts[1].trim());
+            int queue = parts.length > 2 ? Integer.parseInt(parts[2].trim())
+                    : url.getIntParameter(URLParam.bulkheadQueueSize.getName(), URLParam.bulkheadQueueSize.getIntValue());
+            return new int[]{threads, queue};
+        }
+        return null;
+    }
+
+    private static Method findMethod(Class<?> clz, Request request) {
+        try {
+            return clz.getMethod(request.getMethodName(), request.getParameterTypes());
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static String methodKey(Request request) {
+        StringBuilder key = new StringBuilder(64);
+        key.append(request.getInterfaceName()).append('#').append(request.getMethodName());
+        Class<?>[] types = request.getParameterTypes();
+        if (types != null) {
+            for (Class<?> type : types) {
+                key.append(',').append(type.getName());
+            }
+        }
+        return key.toString();
+    }
+}
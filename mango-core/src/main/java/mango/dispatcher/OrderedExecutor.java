@@ -0,0 +1,169 @@
+package mango.dispatcher;
+
+import mango.core.Request;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按路由键分段串行执行
+ * 路由键取自请求参数或attachment，按哈希落到固定的分段；同一分段的任务按到达顺序依次执行，
+ * 不同分段在底层线程池中并行。分段任务排队而不是阻塞在锁上，等待期间不占用工作线程
+ * @author Ricky Fung
+ */
+public class OrderedExecutor implements Executor {
+
+    // 分段每次最多连续执行的任务数，之后重新提交，让其他分段有机会执行
+    private static final int MAX_BATCH = 16;
+
+    private final Executor executor;
+    private final SerialExecutor[] stripes;
+    private final int mask;
+    private final int keyArg;
+    private final String keyAttachment;
+    // 所有分段共享的排队上限，与业务线程池的队列长度一致
+    private final int queueSize;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param executor 实际执行任务的线程池
+     * @param stripes 分段数，向上取整为2的幂
+     * @param queueSize 所有分段合计最多排队的任务数，超过时拒绝
+     * @param keyArg 路由键在参数中的下标，小于0表示不使用参数
+     * @param keyAttachment 路由键的attachment名，keyArg小于0时使用
+     */
+    public OrderedExecutor(Executor executor, int stripes, int queueSize, int keyArg, String keyAttachment) {
+        int n = 1;
+        while (n < stripes) {
+            n <<= 1;
+        }
+        this.executor = executor;
+        this.stripes = new SerialExecutor[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new SerialExecutor();
+        }
+        this.queueSize = queueSize;
+        this.mask = n - 1;
+        this.keyArg = keyArg;
+        this.keyAttachment = keyAttachment;
+    }
+
+    /**
+     * 没有路由键的任务都在第一个分段串行执行
+     */
+    @Override
+    public void execute(Runnable task) {
+        stripes[0].execute(task);
+    }
+
+    public void execute(Request request, Runnable task) {
+        Object key = routingKey(request);
+        if (key == null) {
+            execute(task);
+            return;
+        }
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        stripes[h & mask].execute(task);
+    }
+
+    private Object routingKey(Request request) {
+        if (keyArg >= 0) {
+            Object[] args = request.getArguments();
+            return args != null && keyArg < args.length ? args[keyArg] : null;
+        }
+        if (keyAttachment != null && keyAttachment.length() > 0) {
+            return request.getAttachment(keyAttachment);
+        }
+        return null;
+    }
+
+    /**
+     * 串行执行器，同一时刻最多有一个执行任务提交在底层线程池中
+     */
+    private class SerialExecutor implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // 是否已提交到底层线程池
+        private final AtomicInteger scheduled = new AtomicInteger();
+
+        void execute(Runnable task) {
+            if (pending.incrementAndGet() > queueSize) {
+                pending.decrementAndGet();
+                throw new RejectedExecutionException("ordered executor is full: " + queueSize);
+            }
+            tasks.offer(task);
+            if (scheduled.compareAndSet(0, 1) && !submit()) {
+                // 底层线程池已满，撤回本次任务由调用方处理；已被其他线程取走执行时正常返回
+                boolean removed = tasks.remove(task);
+                if (removed) {
+                    pending.decrementAndGet();
+                }
+                rejectPending();
+                if (removed) {
+                    throw new RejectedExecutionException("ordered stripe executor is full");
+                }
+            }
+        }
+
+        /**
+         * 持有scheduled时调用
+         */
+        private boolean submit() {
+            try {
+                executor.execute(this);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        /**
+         * 底层线程池已满时拒绝排队中的任务，否则它们不会再被提交；持有scheduled时调用，返回前释放
+         */
+        private void rejectPending() {
+            do {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    pending.decrementAndGet();
+                    reject(task);
+                }
+                scheduled.set(0);
+                // 释放后再检查，避免与刚入队但没能提交的任务错过
+            } while (!tasks.isEmpty() && scheduled.compareAndSet(0, 1) && !submit());
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < MAX_BATCH; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    pending.decrementAndGet();
+                    task.run();
+                }
+            } finally {
+                scheduled.set(0);
+                // 释放后再检查，避免与刚入队但没能提交的任务错过
+                if (!tasks.isEmpty() && scheduled.compareAndSet(0, 1) && !submit()) {
+                    rejectPending();
+                }
+            }
+        }
+    }
+
+    /**
+     * 请求任务返回BUSY，其他任务无法通知调用方，在当前线程执行
+     */
+    private static void reject(Runnable task) {
+        if (task instanceof DispatchTask) {
+            ((DispatchTask) task).reject();
+        } else {
+            task.run();
+        }
+    }
+}
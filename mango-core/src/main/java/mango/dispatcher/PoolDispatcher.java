@@ -0,0 +1,99 @@
+package mango.dispatcher;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.Request;
+import mango.rpc.MessageRouter;
+import mango.util.Constants;
+import mango.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有请求在共享的业务线程池中执行
+ * 队列有界，满时拒绝；可选CoDel丢弃排队过久的请求，以及积压时的自适应LIFO；
+ * JDK 21+上默认每个请求一个虚拟线程，同时执行的请求数上限为maxWorkerThread + workerQueueSize
+ * @author Ricky Fung
+ */
+public class PoolDispatcher implements Dispatcher {
+    protected final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    //业务处理线程池
+    protected Executor pool;
+    protected int queueSize;
+    protected boolean adaptiveLifo;
+    protected boolean virtualThreads;
+    // 未开启时为null
+    protected CoDel codel;
+
+    @Override
+    public void init(URL url, MessageRouter router) {
+        this.queueSize = Math.max(1, url.getIntParameter(URLParam.workerQueueSize.getName(), URLParam.workerQueueSize.getIntValue()));
+        this.adaptiveLifo = url.getBooleanParameter(URLParam.adaptiveLifo.getName(), URLParam.adaptiveLifo.isBoolValue());
+        this.virtualThreads = useVirtualThreads(url);
+        int codelTarget = url.getIntParameter(URLParam.codelTarget.getName(), URLParam.codelTarget.getIntValue());
+        if (codelTarget > 0) {
+            this.codel = new CoDel(codelTarget, url.getIntParameter(URLParam.codelInterval.getName(), URLParam.codelInterval.getIntValue()));
+        }
+        this.pool = newExecutor(url.getIntParameter(URLParam.minWorkerThread.getName(), URLParam.minWorkerThread.getIntValue()),
+                url.getIntParameter(URLParam.maxWorkerThread.getName(), URLParam.maxWorkerThread.getIntValue()), "biz");
+    }
+
+    @Override
+    public void dispatch(Request request, DispatchTask task) {
+        task.setCoDel(codel);
+        pool.execute(task);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown(pool);
+    }
+
+    protected Executor newExecutor(int coreThreads, int maxThreads, String name) {
+        if (virtualThreads) {
+            return new VirtualThreadExecutor(String.format("%s-%s-vt", Constants.FRAMEWORK_NAME, name), maxThreads + queueSize);
+        }
+        return new ThreadPoolExecutor(coreThreads, maxThreads, 120, TimeUnit.SECONDS, newQueue(queueSize),
+                new DefaultThreadFactory(String.format("%s-%s", Constants.FRAMEWORK_NAME, name)));
+    }
+
+    protected BlockingQueue<Runnable> newQueue(int size) {
+        // 积压超过队列的1/4时切换为LIFO
+        return adaptiveLifo ? new AdaptiveLifoQueue(size, size / 4) : new LinkedBlockingQueue<Runnable>(size);
+    }
+
+    protected static void shutdown(Executor executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) executor).shutdown();
+        } else if (executor instanceof VirtualThreadExecutor) {
+            ((VirtualThreadExecutor) executor).shutdown();
+        } else if (executor instanceof Bulkhead) {
+            ((Bulkhead) executor).shutdown();
+        }
+    }
+
+    /**
+     * virtualThreads为auto时JDK支持就使用虚拟线程，为true但不支持时回退到线程池
+     */
+    private boolean useVirtualThreads(URL url) {
+        String value = url.getParameter(URLParam.virtualThreads.getName(), URLParam.virtualThreads.getValue());
+        if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        if (!VirtualThreads.isSupported()) {
+            if ("true".equalsIgnoreCase(value)) {
+                logger.warn("virtual threads require JDK 21+, fall back to thread pool");
+            }
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,121 @@
+package mango.dispatcher;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.Request;
+import mango.rpc.MessageRouter;
+import mango.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 基于预分配环形队列的请求派发
+ * 每个工作线程独占一个多生产者单消费者的环形队列，IO线程按请求id选择队列，
+ * 入队无锁、不分配节点，工作线程批量取出任务；适合QPS高、处理耗时短且均匀的服务
+ * @author Ricky Fung
+ */
+public class RingBufferDispatcher implements Dispatcher {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // 工作线程一次最多取出的任务数
+    private static final int MAX_BATCH = 64;
+
+    private TaskRingBuffer[] rings;
+    private Thread[] workers;
+    private WaitStrategy waitStrategy;
+    private boolean signal;
+    // 未开启时为null
+    private CoDel codel;
+    private volatile boolean running;
+
+    @Override
+    public void init(URL url, MessageRouter router) {
+        int workerCount = url.getIntParameter(URLParam.ringBufferWorkers.getName(), URLParam.ringBufferWorkers.getIntValue());
+        if (workerCount <= 0) {
+            workerCount = Runtime.getRuntime().availableProcessors();
+        }
+        int ringSize = Math.max(2, url.getIntParameter(URLParam.ringBufferSize.getName(), URLParam.ringBufferSize.getIntValue()));
+        this.waitStrategy = WaitStrategy.of(url);
+        this.signal = waitStrategy.needsSignal();
+        int codelTarget = url.getIntParameter(URLParam.codelTarget.getName(), URLParam.codelTarget.getIntValue());
+        if (codelTarget > 0) {
+            this.codel = new CoDel(codelTarget, url.getIntParameter(URLParam.codelInterval.getName(), URLParam.codelInterval.getIntValue()));
+        }
+
+        this.running = true;
+        this.rings = new TaskRingBuffer[workerCount];
+        this.workers = new Thread[workerCount];
+        ThreadFactory threadFactory = new DefaultThreadFactory(String.format("%s-ring", Constants.FRAMEWORK_NAME));
+        for (int i = 0; i < workerCount; i++) {
+            final TaskRingBuffer ring = new TaskRingBuffer(ringSize);
+            rings[i] = ring;
+            workers[i] = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    consume(ring);
+                }
+            });
+            ring.setConsumer(workers[i]);
+            workers[i].start();
+        }
+        logger.info("RingBufferDispatcher started, workers:{}, ringSize:{}, waitStrategy:{}",
+                workerCount, ringSize, waitStrategy.getName());
+    }
+
+    @Override
+    public void dispatch(Request request, DispatchTask task) {
+        // 关闭后工作线程会退出，入队的任务不会再被处理
+        if (!running) {
+            throw new RejectedExecutionException("RingBufferDispatcher is shut down");
+        }
+        task.setCoDel(codel);
+        int n = rings.length;
+        int start = (int) ((request.getRequestId() & Long.MAX_VALUE) % n);
+        // 选中的队列满了依次尝试其他队列
+        for (int i = 0; i < n; i++) {
+            int index = start + i;
+            if (index >= n) {
+                index -= n;
+            }
+            if (rings[index].offer(task, signal)) {
+                return;
+            }
+        }
+        throw new RejectedExecutionException("ring buffers are full");
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        for (TaskRingBuffer ring : rings) {
+            ring.wakeup();
+        }
+    }
+
+    private void consume(TaskRingBuffer ring) {
+        DispatchTask[] batch = new DispatchTask[MAX_BATCH];
+        int idle = 0;
+        // 关闭后处理完已入队的任务再退出
+        while (running || !ring.isEmpty()) {
+            int n = ring.drainTo(batch);
+            if (n == 0) {
+                idle = waitStrategy.idle(ring, idle);
+                continue;
+            }
+            idle = 0;
+            for (int i = 0; i < n; i++) {
+                DispatchTask task = batch[i];
+                batch[i] = null;
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    logger.error("RingBufferDispatcher task error", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package mango.dispatcher;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多生产者单消费者的有界环形队列
+ * 槽位预先分配，生产者CAS领取序号后写入槽位并发布序号，入队不分配节点也不加锁；
+ * 消费者一次取出一批已发布的任务，整批只更新一次消费位置
+ * @author Ricky Fung
+ */
+final class TaskRingBuffer {
+
+    private final DispatchTask[] tasks;
+    // 每个槽位最近一次发布的序号，等于期望的序号时槽位可读
+    private final AtomicLongArray published;
+    private final int capacity;
+    private final int mask;
+    // 下一个待领取的序号
+    private final AtomicLong tail = new AtomicLong();
+    // 下一个待消费的序号，只由消费者写
+    private final AtomicLong head = new AtomicLong();
+
+    private volatile Thread consumer;
+    private volatile boolean waiting;
+
+    TaskRingBuffer(int size) {
+        int n = 1;
+        while (n < size) {
+            n <<= 1;
+        }
+        this.capacity = n;
+        this.mask = n - 1;
+        this.tasks = new DispatchTask[n];
+        this.published = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * 队列已满时返回false
+     */
+    boolean offer(DispatchTask task, boolean signal) {
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head.get() >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+
+        int index = (int) seq & mask;
+        tasks[index] = task;
+        // volatile写发布槽位，与消费者挂起前的waiting写、再次检查构成可见性保证
+        published.set(index, seq);
+        if (signal && waiting) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * 取出最多batch.length个已发布的任务
+     * @return 取出的个数
+     */
+    int drainTo(DispatchTask[] batch) {
+        long seq = head.get();
+        int n = 0;
+        while (n < batch.length) {
+            int index = (int) seq & mask;
+            if (published.get(index) != seq) {
+                break;
+            }
+            batch[n++] = tasks[index];
+            tasks[index] = null;
+            seq++;
+        }
+        if (n > 0) {
+            // 生产者只用它判断是否已满，延迟可见只会让队列显得更满
+            head.lazySet(seq);
+        }
+        return n;
+    }
+
+    boolean isEmpty() {
+        long seq = head.get();
+        return published.get((int) seq & mask) != seq;
+    }
+
+    /**
+     * 消费者挂起，直到有新任务发布或超时
+     */
+    void park(long nanos) {
+        waiting = true;
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        waiting = false;
+    }
+
+    void wakeup() {
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package mango.dispatcher;
+
+import mango.util.VirtualThreads;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个请求一个虚拟线程，同时执行的请求数超过上限时拒绝
+ * @author Ricky Fung
+ */
+public class VirtualThreadExecutor implements Executor {
+
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+    private final AtomicInteger running = new AtomicInteger();
+
+    public VirtualThreadExecutor(String name, int maxConcurrency) {
+        this.executor = VirtualThreads.newThreadPerTaskExecutor(name + "-");
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        if (running.incrementAndGet() > maxConcurrency) {
+            running.decrementAndGet();
+            throw new RejectedExecutionException("too many concurrent requests: " + maxConcurrency);
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,81 @@
+package mango.dispatcher;
+
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.exception.RpcFrameworkException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 环形队列消费线程空闲时的等待策略
+ * busyspin延迟最低但一直占用一个CPU；yield空转一段时间后让出CPU；
+ * park空转、让出后挂起，由生产者唤醒，适合工作线程数多于空闲CPU的场景
+ * @author Ricky Fung
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN("busyspin"),
+    YIELD("yield"),
+    PARK("park");
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    // 兜底的最长挂起时间，正常情况下由生产者唤醒
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+
+    WaitStrategy(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static WaitStrategy of(URL url) {
+        String type = url.getParameter(URLParam.waitStrategy.getName(), URLParam.waitStrategy.getValue());
+        for (WaitStrategy strategy : values()) {
+            if (strategy.name.equalsIgnoreCase(type)) {
+                return strategy;
+            }
+        }
+        throw new RpcFrameworkException("unknown wait strategy: " + type);
+    }
+
+    /**
+     * 队列为空时调用一次
+     * @param ring 消费的队列
+     * @param counter 连续空闲的次数，取到任务后清零
+     * @return 新的空闲次数
+     */
+    int idle(TaskRingBuffer ring, int counter) {
+        switch (this) {
+            case BUSY_SPIN:
+                return counter;
+            case YIELD:
+                if (counter >= SPIN_TRIES) {
+                    Thread.yield();
+                    return counter;
+                }
+                return counter + 1;
+            default:
+                if (counter < SPIN_TRIES) {
+                    return counter + 1;
+                }
+                if (counter < SPIN_TRIES + YIELD_TRIES) {
+                    Thread.yield();
+                    return counter + 1;
+                }
+                ring.park(MAX_PARK_NANOS);
+                return counter;
+        }
+    }
+
+    /**
+     * 消费线程是否可能挂起，需要生产者唤醒
+     */
+    boolean needsSignal() {
+        return this == PARK;
+    }
+}
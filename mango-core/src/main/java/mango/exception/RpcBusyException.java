@@ -0,0 +1,20 @@
+package mango.exception;
+
+/**
+ * 服务端过载拒绝请求，或客户端到服务端的连接饱和
+ * 过载时大量出现，不填充堆栈以降低开销
+ * @author Ricky Fung
+ */
+public class RpcBusyException extends AbstractRpcException {
+
+    private static final long serialVersionUID = 5412738629178204453L;
+
+    public RpcBusyException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
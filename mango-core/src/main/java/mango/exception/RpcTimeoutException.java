@@ -0,0 +1,20 @@
+package mango.exception;
+
+/**
+ * 请求超时异常
+ * 超时在高负载下可能大量出现，不填充堆栈以降低开销
+ * @author Ricky Fung
+ */
+public class RpcTimeoutException extends AbstractRpcException {
+
+    private static final long serialVersionUID = -3460981527839203446L;
+
+    public RpcTimeoutException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,23 @@
+package mango.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 计数器
+ * @author Ricky Fung
+ */
+public class Counter {
+    private final AtomicLong count = new AtomicLong();
+
+    public void inc() {
+        count.incrementAndGet();
+    }
+
+    public void inc(long n) {
+        count.addAndGet(n);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+}
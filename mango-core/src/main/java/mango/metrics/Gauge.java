@@ -0,0 +1,10 @@
+package mango.metrics;
+
+/**
+ * 瞬时值指标，读取时计算
+ * @author Ricky Fung
+ */
+public interface Gauge {
+
+    long getValue();
+}
@@ -0,0 +1,56 @@
+package mango.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 进程内的指标注册表
+ * 指标名使用点号分隔，例如 client.timeout.127.0.0.1:21918
+ * @author Ricky Fung
+ */
+public final class Metrics {
+
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    /**
+     * 获取计数器，不存在时创建
+     */
+    public static Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public static void registerGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public static void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * 当前所有指标的快照，按名称排序
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().getCount());
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().getValue());
+        }
+        return snapshot;
+    }
+}
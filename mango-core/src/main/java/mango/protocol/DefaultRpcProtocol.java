@@ -1,14 +1,18 @@
 package mango.protocol;
 
 import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
 import mango.core.Request;
 import mango.core.Response;
+import mango.exception.RpcBusyException;
 import mango.exception.RpcFrameworkException;
 import mango.rpc.*;
 import mango.transport.NettyClient;
 import mango.transport.NettyClientImpl;
 import mango.transport.NettyServer;
 import mango.transport.NettyServerImpl;
+import mango.util.Constants;
 import mango.util.FrameworkUtils;
 
 import java.util.HashMap;
@@ -24,6 +28,8 @@ public class DefaultRpcProtocol extends AbstractProtocol {
     private final ConcurrentHashMap<String, NettyServer> ipPort2Server = new ConcurrentHashMap<>();
     // 多个service可能在相同端口进行服务暴露，因此来自同个端口的请求需要进行路由以找到相应的服务，同时不在该端口暴露的服务不应该被找到
     private final Map<String, MessageRouter> ipPort2RequestRouter = new HashMap<>();
+    // 同一个提供者进程上暴露的多个service共用连接，客户端按引用计数关闭
+    private final Map<String, SharedClient> ipPort2Client = new HashMap<>();
 
     @Override
     protected <T> Reference<T> createReference(Class<T> clz, URL url, URL serviceUrl) {
@@ -40,21 +46,109 @@ public class DefaultRpcProtocol extends AbstractProtocol {
 
     }
 
+    /**
+     * 决定连接行为的参数，取值不同的引用不共享客户端
+     */
+    private static final URLParam[] CONNECTION_PARAMS = {URLParam.codec, URLParam.serialization, URLParam.zeroCopy,
+            URLParam.poolType, URLParam.minPoolSize, URLParam.maxPoolSize, URLParam.heartbeat,
+            URLParam.writeBatch, URLParam.writeBatchSize, URLParam.writeBatchDelay,
+            URLParam.transport, URLParam.epollMode, URLParam.tcpQuickAck, URLParam.busyPoll,
+            URLParam.codecVersion, URLParam.compression, URLParam.compressThreshold,
+            URLParam.writeBufferHighWaterMark, URLParam.writeBufferLowWaterMark, URLParam.maxInFlight, URLParam.backpressure};
+
+    /**
+     * 共享客户端的key: host:port/codec/serialization/...，包含所有连接参数
+     */
+    private String getClientKey(URL url) {
+        StringBuilder key = new StringBuilder(url.getServerAndPort());
+        for (URLParam param : CONNECTION_PARAMS) {
+            key.append(Constants.PATH_SEPARATOR).append(url.getParameter(param.getName(), param.getValue()));
+        }
+        return key.toString();
+    }
+
+    /**
+     * 获取共享客户端，不存在则创建
+     * 连接参数都在key中，只有连接参数一致的引用才共享客户端；
+     * 超时时间和流式窗口按引用随每次调用传入
+     */
+    private NettyClient acquireClient(String clientKey, URL url) {
+        synchronized (ipPort2Client) {
+            SharedClient shared = ipPort2Client.get(clientKey);
+            if (shared == null) {
+                // url中已合并了消费端的连接参数
+                shared = new SharedClient(new NettyClientImpl(url));
+                ipPort2Client.put(clientKey, shared);
+            }
+            shared.refCount++;
+            return shared.client;
+        }
+    }
+
+    /**
+     * 释放共享客户端，最后一个引用释放时关闭连接
+     */
+    private void releaseClient(String clientKey) {
+        NettyClient client = null;
+        synchronized (ipPort2Client) {
+            SharedClient shared = ipPort2Client.get(clientKey);
+            if (shared == null) {
+                return;
+            }
+            if (--shared.refCount == 0) {
+                ipPort2Client.remove(clientKey);
+                client = shared.client;
+            }
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    private static class SharedClient {
+        private final NettyClient client;
+        private int refCount;
+
+        SharedClient(NettyClient client) {
+            this.client = client;
+        }
+    }
+
     /**
      * 定义一个内部类供此类使用
      */
     class DefaultRpcReference<T> extends AbstractReference<T> {
+        private final String clientKey;
+        private final int timeout;
+        private final int streamWindow;
         private NettyClient client;
+        private volatile boolean released;
 
         DefaultRpcReference(Class<T> clz, URL url, URL serviceUrl) {
             super(clz, url, serviceUrl);
-            this.client = new NettyClientImpl(serviceUrl);
+            this.clientKey = getClientKey(url);
+            // 客户端被多个服务共享，超时时间在调用时传给客户端
+            this.timeout = url.getIntParameter(URLParam.requestTimeout.getName(), URLParam.requestTimeout.getIntValue());
+            this.streamWindow = url.getIntParameter(URLParam.streamWindow.getName(), URLParam.streamWindow.getIntValue());
+            this.client = acquireClient(clientKey, url);
         }
 
         @Override
         public Response doCall(Request request) {
             try {
-                return client.invokeSync(request);
+                Response response;
+                if (request instanceof DefaultRequest && ((DefaultRequest) request).getType() == Constants.REQUEST_STREAM) {
+                    response = client.invokeStream(request, timeout, streamWindow);
+                } else {
+                    response = client.invokeSync(request, timeout);
+                }
+                // 服务端过载，抛出框架异常由集群策略重试其他提供者
+                if (response.getException() instanceof RpcBusyException) {
+                    throw (RpcBusyException) response.getException();
+                }
+                return response;
+            } catch (RpcBusyException e) {
+                throw e;
             } catch (Exception e) {
                 throw new RpcFrameworkException("invoke exception", e);
             }
@@ -62,13 +156,23 @@ public class DefaultRpcProtocol extends AbstractProtocol {
 
         @Override
         public void init() {
-            this.client.open();
+            try {
+                this.client.open();
+            } catch (RuntimeException e) {
+                // 连接失败时释放引用，最后一个引用会移除共享客户端，之后的引用重新创建
+                destroy();
+                throw e;
+            }
         }
 
         @Override
-        public void destroy() {
+        public synchronized void destroy() {
+            if (released) {
+                return;
+            }
+            released = true;
             try{
-                client.close();
+                releaseClient(clientKey);
             } catch (Exception e){
                 logger.error("reference destroy error", e);
             }
@@ -78,6 +182,11 @@ public class DefaultRpcProtocol extends AbstractProtocol {
         public boolean isAvailable() {
             return client.isAvailable();
         }
+
+        @Override
+        public boolean isSaturated() {
+            return client.isSaturated();
+        }
     }
 
     class DefaultRpcExporter<T> extends AbstractExporter<T> {
@@ -90,6 +90,11 @@ public class ProtocolFilterWrapper implements Protocol {
                     return lr.isAvailable();
                 }
 
+                @Override
+                public boolean isSaturated() {
+                    return lr.isSaturated();
+                }
+
                 @Override
                 public String desc() {
                     return lr.desc();
@@ -15,6 +15,7 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -51,7 +52,8 @@ public class ReferenceInvocationHandler<T> implements InvocationHandler {
         request.setMethodName(method.getName());
         request.setParameterTypes(method.getParameterTypes());
         request.setArguments(args);
-        request.setType(Constants.REQUEST_SYNC);
+        // 返回Iterator的方法按流式调用，元素边消费边接收；返回的迭代器实现了Closeable，不读完时必须close
+        request.setType(method.getReturnType() == Iterator.class ? Constants.REQUEST_STREAM : Constants.REQUEST_SYNC);
 
 
         boolean throwException = checkMethodExceptionSignature(method);
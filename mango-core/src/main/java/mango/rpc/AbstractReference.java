@@ -58,6 +58,11 @@ public abstract class AbstractReference<T> implements Reference<T> {
 
     }
 
+    @Override
+    public boolean isSaturated() {
+        return false;
+    }
+
     @Override
     public int activeCount() {
         return activeCounter.get();
@@ -46,6 +46,13 @@ public class MessageRouter implements MessageHandler {
         return call(request, provider);
     }
 
+    /**
+     * 获取处理该请求的执行者，不存在时返回null
+     */
+    public Provider<?> getProvider(Request request) {
+        return providers.get(FrameworkUtils.getServiceKey(request));
+    }
+
     protected Response call(Request request, Provider<?> provider) {
         try {
             // 通过调用者执行call方法
@@ -16,4 +16,9 @@ public interface Reference<T> extends Caller<T> {
     int activeCount();
 
     URL getServiceUrl();
+
+    /**
+     * 到服务提供者的连接已饱和，负载均衡优先选择其他引用
+     */
+    boolean isSaturated();
 }
@@ -0,0 +1,40 @@
+package mango.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import mango.codec.BufferSerializer;
+import mango.codec.StreamSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 序列化抽象类，子类只需实现流式读写，byte[]和ByteBuf方式都适配到流上
+ * @author Ricky Fung
+ */
+public abstract class AbstractSerializer implements StreamSerializer, BufferSerializer {
+
+    @Override
+    public byte[] serialize(Object msg) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        serialize(msg, bos);
+        return bos.toByteArray();
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, Class<T> type) throws IOException {
+        return deserialize(new ByteArrayInputStream(data), type);
+    }
+
+    @Override
+    public void serialize(Object msg, ByteBuf out) throws IOException {
+        serialize(msg, new ByteBufOutputStream(out));
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> type) throws IOException {
+        return deserialize(new ByteBufInputStream(in, in.readableBytes()), type);
+    }
+}
@@ -7,16 +7,19 @@ import com.dyuproject.protostuff.runtime.RuntimeSchema;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import mango.codec.Serializer;
+import io.netty.buffer.ByteBuf;
+import mango.serialization.AbstractSerializer;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.concurrent.ExecutionException;
 
 /**
  * Protostuff协议序列化
  * @author Ricky Fung
  */
-public class ProtostuffSerializer implements Serializer {
+public class ProtostuffSerializer extends AbstractSerializer {
 
     //TODO：
     private static final LoadingCache<Class<?>, Schema<?>> schemas = CacheBuilder.newBuilder()
@@ -27,6 +30,16 @@ public class ProtostuffSerializer implements Serializer {
                 }
             });
 
+    /**
+     * ByteBuf读写时复用的缓冲区，每个IO线程一个
+     */
+    private static final ThreadLocal<LinkedBuffer> LOCAL_BUFFER = new ThreadLocal<LinkedBuffer>() {
+        @Override
+        protected LinkedBuffer initialValue() {
+            return LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        }
+    };
+
     /**
      * 序列化
      */
@@ -34,7 +47,7 @@ public class ProtostuffSerializer implements Serializer {
     public byte[] serialize(Object msg) throws IOException {
         LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
         try {
-            Schema schema = getSchema(msg.getClass());
+            Schema<Object> schema = getSchema(msg);
             byte[] arr = ProtostuffIOUtil.toByteArray(msg, schema, buffer);
             return arr;
         } finally {
@@ -49,12 +62,58 @@ public class ProtostuffSerializer implements Serializer {
         Schema<T> schema = getSchema(type);
         T msg = schema.newMessage();
         ProtostuffIOUtil.mergeFrom(buf, msg, schema);
-        return (T) msg;
+        return msg;
+    }
+
+    @Override
+    public void serialize(Object msg, OutputStream out) throws IOException {
+        LinkedBuffer buffer = LOCAL_BUFFER.get();
+        try {
+            Schema<Object> schema = getSchema(msg);
+            ProtostuffIOUtil.writeTo(out, msg, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> type) throws IOException {
+        Schema<T> schema = getSchema(type);
+        T msg = schema.newMessage();
+        LinkedBuffer buffer = LOCAL_BUFFER.get();
+        try {
+            ProtostuffIOUtil.mergeFrom(in, msg, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+        return msg;
+    }
+
+    /**
+     * 直接从ByteBuf读取，堆内存时直接使用底层数组
+     */
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> type) throws IOException {
+        if (!in.hasArray()) {
+            return super.deserialize(in, type);
+        }
+        Schema<T> schema = getSchema(type);
+        T msg = schema.newMessage();
+        int length = in.readableBytes();
+        ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), length, msg, schema);
+        in.skipBytes(length);
+        return msg;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Schema<Object> getSchema(Object msg) throws IOException {
+        return (Schema<Object>) getSchema(msg.getClass());
     }
 
-    private static Schema getSchema(Class<?> cls) throws IOException {
+    @SuppressWarnings("unchecked")
+    private static <T> Schema<T> getSchema(Class<T> cls) throws IOException {
         try {
-            return schemas.get(cls);
+            return (Schema<T>) schemas.get(cls);
         } catch (ExecutionException e) {
             throw new IOException("create protostuff schema error", e);
         }
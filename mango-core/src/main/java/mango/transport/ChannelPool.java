@@ -0,0 +1,282 @@
+package mango.transport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.extension.ExtensionLoader;
+import mango.metrics.Gauge;
+import mango.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 客户端到同一个服务提供者的连接池
+ * 初始化时建立minPoolSize个连接，选中连接的等待请求过多时异步扩容到maxPoolSize，
+ * 多余的空闲连接定时回收；连接不足时在定时器上按指数退避异步重连，不阻塞调用线程
+ * 选中的连接饱和(不可写或达到maxInFlight)时换用未饱和的连接并扩容
+ * @author Ricky Fung
+ */
+public class ChannelPool {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // 重连退避的初始值和上限(ms)
+    private static final long RECONNECT_INITIAL_BACKOFF = 100;
+    private static final long RECONNECT_MAX_BACKOFF = 10 * 1000;
+
+    private final Bootstrap bootstrap;
+    private final InetSocketAddress remoteAddress;
+    private final ChannelSelector selector;
+    private final ScheduledExecutorService timer;
+
+    private final int minSize;
+    private final int maxSize;
+    private final int growThreshold;
+    private final long idleTimeout;
+    private final int maxInFlight;
+    private final URL url;
+    private final boolean writeBatch;
+
+    private final List<ChannelWrapper> channels = new CopyOnWriteArrayList<>();
+    // 正在建立中的连接数
+    private final AtomicInteger connecting = new AtomicInteger(0);
+    // 是否有等待中的重连
+    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+    // 连续重连失败次数
+    private volatile int reconnectAttempts;
+    private volatile boolean closed;
+
+    public ChannelPool(Bootstrap bootstrap, InetSocketAddress remoteAddress, URL url, ScheduledExecutorService timer) {
+        this.bootstrap = bootstrap;
+        this.remoteAddress = remoteAddress;
+        this.timer = timer;
+        this.url = url;
+        this.writeBatch = WriteQueue.isEnabled(url);
+        this.selector = ExtensionLoader.getExtensionLoader(ChannelSelector.class).getExtension(
+                url.getParameter(URLParam.poolType.getName(), URLParam.poolType.getValue()));
+        this.minSize = Math.max(1, url.getIntParameter(URLParam.minPoolSize.getName(), URLParam.minPoolSize.getIntValue()));
+        this.maxSize = Math.max(minSize, url.getIntParameter(URLParam.maxPoolSize.getName(), URLParam.maxPoolSize.getIntValue()));
+        this.growThreshold = url.getIntParameter(URLParam.poolGrowThreshold.getName(), URLParam.poolGrowThreshold.getIntValue());
+        this.idleTimeout = url.getIntParameter(URLParam.poolIdleTimeout.getName(), URLParam.poolIdleTimeout.getIntValue());
+        this.maxInFlight = url.getIntParameter(URLParam.maxInFlight.getName(), URLParam.maxInFlight.getIntValue());
+    }
+
+    /**
+     * 同步建立最小连接数
+     */
+    public void init() throws InterruptedException {
+        for (int i = 0; i < minSize; i++) {
+            connect();
+        }
+    }
+
+    /**
+     * 选择一个可用连接，没有可用连接时触发异步重连并返回null
+     */
+    public ChannelWrapper acquire() {
+        ChannelWrapper channel = selector.select(channels);
+        if (channel == null) {
+            reconnect();
+        } else if (channel.isSaturated()) {
+            grow();
+            for (ChannelWrapper other : channels) {
+                if (other.isAvailable() && !other.isSaturated()) {
+                    return other;
+                }
+            }
+        } else if (channel.pendingCount() >= growThreshold) {
+            grow();
+        }
+        return channel;
+    }
+
+    public List<ChannelWrapper> getChannels() {
+        return channels;
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * 是否有心跳正常的连接，重连期间不可用
+     */
+    public boolean isAvailable() {
+        for (ChannelWrapper channel : channels) {
+            if (channel.isAvailable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 可用的连接都已饱和，负载均衡优先选择其他提供者
+     */
+    public boolean isSaturated() {
+        boolean saturated = false;
+        for (ChannelWrapper channel : channels) {
+            if (channel.isAvailable()) {
+                if (!channel.isSaturated()) {
+                    return false;
+                }
+                saturated = true;
+            }
+        }
+        return saturated;
+    }
+
+    private ChannelWrapper connect() throws InterruptedException {
+        ChannelFuture channelFuture = bootstrap.connect(remoteAddress).sync();
+        return add(channelFuture);
+    }
+
+    /**
+     * 异步扩容一个连接
+     */
+    private void grow() {
+        int pending = connecting.get();
+        if (closed || channels.size() + pending >= maxSize || !connecting.compareAndSet(pending, pending + 1)) {
+            return;
+        }
+        bootstrap.connect(remoteAddress).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                connecting.decrementAndGet();
+                if (future.isSuccess()) {
+                    add(future);
+                    logger.debug("ChannelPool grow to {}, remote address:{}", channels.size(), remoteAddress);
+                } else {
+                    logger.warn("ChannelPool grow failure, remote address:" + remoteAddress, future.cause());
+                }
+            }
+        });
+    }
+
+    /**
+     * 异步重连，同一时刻只有一个重连在进行，失败后按指数退避加随机抖动再次尝试
+     */
+    private void reconnect() {
+        if (closed || !reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = 0;
+        if (reconnectAttempts > 0) {
+            long backoff = Math.min(RECONNECT_MAX_BACKOFF, RECONNECT_INITIAL_BACKOFF << Math.min(reconnectAttempts - 1, 16));
+            // 在[backoff/2, backoff]之间随机，避免多个客户端同时重连
+            delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        }
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    doReconnect();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // 定时器已关闭
+            reconnecting.set(false);
+        }
+    }
+
+    private void doReconnect() {
+        if (closed) {
+            reconnecting.set(false);
+            return;
+        }
+        bootstrap.connect(remoteAddress).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                reconnecting.set(false);
+                if (future.isSuccess()) {
+                    reconnectAttempts = 0;
+                    add(future);
+                    logger.info("ChannelPool reconnect success, remote address:{}", remoteAddress);
+                    if (channels.size() < minSize) {
+                        reconnect();
+                    }
+                } else {
+                    reconnectAttempts++;
+                    logger.warn("ChannelPool reconnect failure, attempts:{}, remote address:{}", reconnectAttempts, remoteAddress);
+                    reconnect();
+                }
+            }
+        });
+    }
+
+    private ChannelWrapper add(ChannelFuture channelFuture) {
+        final ChannelWrapper channel = new ChannelWrapper(channelFuture);
+        channel.setMaxInFlight(maxInFlight);
+        if (writeBatch) {
+            channel.setWriteQueue(new WriteQueue(channelFuture.channel(), url, "client"));
+        }
+        if (closed) {
+            channel.close();
+            return channel;
+        }
+        channels.add(channel);
+        // 心跳测得的往返时间(us)
+        final String rttMetric = String.format("client.rtt.%s:%d.%s", remoteAddress.getHostString(), remoteAddress.getPort(),
+                ((InetSocketAddress) channelFuture.channel().localAddress()).getPort());
+        Metrics.registerGauge(rttMetric, new Gauge() {
+            @Override
+            public long getValue() {
+                long rtt = channel.getRtt();
+                return rtt < 0 ? rtt : rtt / 1000;
+            }
+        });
+        // 连接断开后移出连接池
+        channelFuture.channel().closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                channels.remove(channel);
+                Metrics.removeGauge(rttMetric);
+                if (channels.size() < minSize) {
+                    reconnect();
+                }
+            }
+        });
+        return channel;
+    }
+
+    /**
+     * 回收超过最小连接数的空闲连接
+     */
+    public void shrink() {
+        long now = System.currentTimeMillis();
+        for (ChannelWrapper channel : channels) {
+            // 心跳失败的连接直接关闭，由acquire重新建立
+            // 用请求名额判断，已从acquire取得但还未写出的连接不会被关闭
+            if (!channel.isAvailable() && channel.inFlightCount() == 0) {
+                channels.remove(channel);
+                channel.close();
+                continue;
+            }
+            if (channels.size() <= minSize) {
+                return;
+            }
+            if (channel.inFlightCount() == 0 && now - channel.getLastWriteTime() > idleTimeout) {
+                channels.remove(channel);
+                channel.close();
+            }
+        }
+    }
+
+    public void close() {
+        closed = true;
+        for (ChannelWrapper channel : channels) {
+            channel.close();
+        }
+        channels.clear();
+    }
+}
@@ -0,0 +1,19 @@
+package mango.transport;
+
+import mango.core.extension.SPI;
+import mango.core.extension.Scope;
+
+import java.util.List;
+
+/**
+ * 连接池中选择连接的策略
+ * @author Ricky Fung
+ */
+@SPI(value = "roundrobin", scope = Scope.PROTOTYPE)
+public interface ChannelSelector {
+
+    /**
+     * 从连接池中选择一个可用连接，没有可用连接时返回null
+     */
+    ChannelWrapper select(List<ChannelWrapper> channels);
+}
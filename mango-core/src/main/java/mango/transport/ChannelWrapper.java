@@ -3,30 +3,200 @@ package mango.transport;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import mango.core.Response;
+import mango.core.ResponseFuture;
+import mango.util.StripedLongMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * 通道包装工具
  * @author Ricky Fung
  */
 public class ChannelWrapper {
+    /**
+     * 通过channel找到对应的包装对象
+     */
+    public static final AttributeKey<ChannelWrapper> KEY = AttributeKey.valueOf("mango.channelWrapper");
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private final ChannelFuture channelFuture;
+    // 该连接上等待响应的请求
+    private final StripedLongMap<ResponseFuture<Response>> futures = new StripedLongMap<>();
+    // 进行中的流式调用，requestId -> 流
+    private final StripedLongMap<ClientStream> streams = new StripedLongMap<>();
+    // 最后一次写请求的时间
+    private volatile long lastWriteTime = System.currentTimeMillis();
+    // 已发送但未收到响应的心跳数
+    private final AtomicInteger missedHeartbeats = new AtomicInteger();
+    // 最近一次心跳的往返时间(ns)
+    private volatile long rtt = -1;
+    // 心跳失败后标记为不可用
+    private volatile boolean available = true;
+    // 批量写队列，未开启时为null
+    private volatile WriteQueue writeQueue;
+    // 最多等待响应的请求数，0表示不限制
+    private volatile int maxInFlight;
+    // 已占用名额的请求数，请求的Future或流移除时归还
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 连接饱和时等待名额或可写的调用线程
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition capacityAvailable = capacityLock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
 
     public ChannelWrapper(ChannelFuture channelFuture) {
         this.channelFuture = channelFuture;
+        channelFuture.channel().attr(KEY).set(this);
     }
 
     public boolean isActive() {
         return (this.channelFuture.channel() != null && this.channelFuture.channel().isActive());
     }
 
+    /**
+     * 连接存活并且心跳正常
+     */
+    public boolean isAvailable() {
+        return available && isActive();
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    /**
+     * 发送心跳，返回未收到响应的心跳数
+     */
+    public int heartbeatSent() {
+        return missedHeartbeats.incrementAndGet();
+    }
+
+    /**
+     * 收到任何消息都说明连接正常，清零丢失的心跳数
+     */
+    public void messageReceived() {
+        if (missedHeartbeats.get() != 0) {
+            missedHeartbeats.set(0);
+            this.available = true;
+        }
+    }
+
+    public void heartbeatReceived(long rttNanos) {
+        this.rtt = rttNanos;
+        missedHeartbeats.set(0);
+        this.available = true;
+    }
+
+    /**
+     * 最近一次心跳的往返时间(ns)，没有测量值时返回-1
+     */
+    public long getRtt() {
+        return rtt;
+    }
+
+    public void setWriteQueue(WriteQueue writeQueue) {
+        this.writeQueue = writeQueue;
+    }
+
+    /**
+     * 写出消息，开启批量写时由IO线程合并flush
+     */
+    public ChannelFuture write(Object msg) {
+        // oneway请求也计入活跃时间，避免连接被当作空闲回收
+        lastWriteTime = System.currentTimeMillis();
+        WriteQueue queue = this.writeQueue;
+        if (queue != null) {
+            return queue.write(msg);
+        }
+        return getChannel().writeAndFlush(msg);
+    }
+
     public boolean isWritable() {
         return this.channelFuture.channel().isWritable();
     }
 
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 写缓冲区超过高水位或等待响应的请求数达到上限
+     */
+    public boolean isSaturated() {
+        int max = maxInFlight;
+        return !isWritable() || (max > 0 && inFlight.get() >= max);
+    }
+
+    /**
+     * 占用一个请求名额，连接饱和时返回false
+     */
+    public boolean tryAcquire() {
+        if (!isWritable()) {
+            return false;
+        }
+        int max = maxInFlight;
+        for (;;) {
+            int current = inFlight.get();
+            if (max > 0 && current >= max) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还请求名额，oneway请求写出后调用，其他请求在移除Future或流时自动归还
+     */
+    public void release() {
+        release(1);
+    }
+
+    private void release(int n) {
+        if (n > 0) {
+            inFlight.addAndGet(-n);
+            signalCapacity();
+        }
+    }
+
+    /**
+     * 归还名额或连接恢复可写时唤醒等待的调用线程
+     */
+    void signalCapacity() {
+        if (waiters.get() > 0) {
+            capacityLock.lock();
+            try {
+                capacityAvailable.signalAll();
+            } finally {
+                capacityLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 等待连接不再饱和，超时返回false
+     */
+    public boolean awaitCapacity(long timeout, TimeUnit unit) throws InterruptedException {
+        waiters.incrementAndGet();
+        capacityLock.lock();
+        try {
+            // 先登记再检查，检查之后的归还一定能唤醒当前线程
+            return !isSaturated() || capacityAvailable.await(timeout, unit);
+        } finally {
+            capacityLock.unlock();
+            waiters.decrementAndGet();
+        }
+    }
+
     public Channel getChannel() {
         return this.channelFuture.channel();
     }
@@ -35,6 +205,67 @@ public class ChannelWrapper {
         return channelFuture;
     }
 
+    public void addFuture(long requestId, ResponseFuture<Response> future) {
+        futures.put(requestId, future);
+    }
+
+    public ResponseFuture<Response> removeFuture(long requestId) {
+        ResponseFuture<Response> future = futures.remove(requestId);
+        if (future != null) {
+            release(1);
+        }
+        return future;
+    }
+
+    public void addStream(long requestId, ClientStream stream) {
+        streams.put(requestId, stream);
+    }
+
+    public ClientStream getStream(long requestId) {
+        return streams.get(requestId);
+    }
+
+    public ClientStream removeStream(long requestId) {
+        ClientStream stream = streams.remove(requestId);
+        if (stream != null) {
+            release(1);
+        }
+        return stream;
+    }
+
+    /**
+     * 连接不可再用时，让所有等待响应的请求立即失败
+     */
+    public void failFutures(Throwable cause) {
+        List<ResponseFuture<Response>> pending = futures.drain();
+        for (ResponseFuture<Response> future : pending) {
+            future.setFailure(cause);
+        }
+        List<ClientStream> streaming = streams.drain();
+        for (ClientStream stream : streaming) {
+            stream.onFailure(cause);
+        }
+        release(pending.size() + streaming.size());
+    }
+
+    /**
+     * 等待响应的请求数，包括进行中的流式调用
+     */
+    public int pendingCount() {
+        return futures.size() + streams.size();
+    }
+
+    /**
+     * 已占用的请求名额，包括已取得连接但还未登记Future的请求
+     */
+    public int inFlightCount() {
+        return inFlight.get();
+    }
+
+    public long getLastWriteTime() {
+        return lastWriteTime;
+    }
+
     public void close(){
         getChannel().close().addListener(new ChannelFutureListener() {
             @Override
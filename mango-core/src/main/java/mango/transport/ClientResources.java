@@ -0,0 +1,100 @@
+package mango.transport;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import mango.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端共享资源
+ * 进程内所有NettyClient共用一组IO线程和一个定时器，线程数与引用的服务/提供者数量无关；
+ * 通过引用计数管理，最后一个客户端关闭时才真正释放
+ * @author Ricky Fung
+ */
+public final class ClientResources {
+    private static final Logger logger = LoggerFactory.getLogger(ClientResources.class);
+
+    private static ClientResources instance;
+    private static int refCount;
+
+    // 每种传输层一组IO线程，按需创建
+    private final Map<NettyTransport, EventLoopGroup> ioGroups = new EnumMap<>(NettyTransport.class);
+    // 定时任务
+    private final ScheduledThreadPoolExecutor timer;
+    // 请求超时检测的时间轮，10ms一格
+    private final HashedWheelTimer wheelTimer;
+
+    private ClientResources() {
+        this.timer = new ScheduledThreadPoolExecutor(1,
+                new DefaultThreadFactory(String.format("%s-%s", Constants.FRAMEWORK_NAME, "client-timer"), true));
+        // 客户端关闭时会取消自己的定时任务，避免取消的任务堆积在队列里
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.wheelTimer = new HashedWheelTimer(
+                new DefaultThreadFactory(String.format("%s-%s", Constants.FRAMEWORK_NAME, "client-wheel"), true),
+                10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * 获取共享资源并增加引用计数
+     */
+    public static synchronized ClientResources retain() {
+        if (instance == null) {
+            instance = new ClientResources();
+            logger.info("ClientResources created");
+        }
+        refCount++;
+        return instance;
+    }
+
+    /**
+     * 减少引用计数，归零时释放线程
+     */
+    public static synchronized void release() {
+        if (refCount <= 0) {
+            return;
+        }
+        if (--refCount == 0) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    public synchronized EventLoopGroup getIoGroup(NettyTransport transport) {
+        EventLoopGroup ioGroup = ioGroups.get(transport);
+        if (ioGroup == null) {
+            ioGroup = transport.newEventLoopGroup(0,
+                    new DefaultThreadFactory(String.format("%s-%s-%s", Constants.FRAMEWORK_NAME, "client-io", transport.getName()), true));
+            ioGroups.put(transport, ioGroup);
+        }
+        return ioGroup;
+    }
+
+    public ScheduledExecutorService getTimer() {
+        return timer;
+    }
+
+    public Timer getWheelTimer() {
+        return wheelTimer;
+    }
+
+    private void shutdown() {
+        timer.shutdown();
+        wheelTimer.stop();
+        synchronized (this) {
+            for (EventLoopGroup ioGroup : ioGroups.values()) {
+                ioGroup.shutdownGracefully();
+            }
+            ioGroups.clear();
+        }
+        logger.info("ClientResources released");
+    }
+}
@@ -0,0 +1,175 @@
+package mango.transport;
+
+import mango.core.Response;
+import mango.exception.RpcFrameworkException;
+import mango.exception.RpcTimeoutException;
+import mango.util.Constants;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消费端的流式调用结果，按服务端发出的顺序逐个返回元素
+ * 服务端最多比消费端多发window个元素；每消费半个窗口就把信用还给服务端，
+ * 消费端缓存的元素数不超过window，与结果总数无关。
+ * 不读完时必须调用close取消，否则流一直占用连接上的并发许可，直到服务端等待信用超时后结束该流；
+ * 等待下一个元素超过timeout时抛出RpcTimeoutException并取消，同样会释放许可
+ * @author Ricky Fung
+ */
+public class ClientStream implements Iterator<Object>, Closeable {
+
+    private static final Object NULL = new Object();
+    private static final Object END = new Object();
+
+    private final ChannelWrapper channelWrapper;
+    private final long requestId;
+    private final int window;
+    private final int timeout;
+    // IO线程写入，消费线程读取
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    // 是否收到过数据帧，对端按v1一次性返回时不需要归还信用
+    private volatile boolean streaming;
+
+    // 以下字段只由消费线程访问
+    private Object head;
+    private int consumed;
+    private boolean done;
+
+    public ClientStream(ChannelWrapper channelWrapper, long requestId, int window, int timeout) {
+        this.channelWrapper = channelWrapper;
+        this.requestId = requestId;
+        this.window = window;
+        this.timeout = timeout;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    void onNext(Object element) {
+        streaming = true;
+        queue.offer(element != null ? element : NULL);
+    }
+
+    /**
+     * 不带流式标记的响应结束整个流，可能是异常，也可能是v1对端一次性返回的所有元素
+     */
+    void onComplete(Response response) {
+        if (response.getException() != null) {
+            queue.offer(new Failure(response.getException()));
+            return;
+        }
+        Object result = response.getResult();
+        if (result instanceof Collection) {
+            for (Object element : (Collection<?>) result) {
+                queue.offer(element != null ? element : NULL);
+            }
+        }
+        queue.offer(END);
+    }
+
+    void onFailure(Throwable cause) {
+        queue.offer(new Failure(cause));
+    }
+
+    /**
+     * 等待第一个元素或结束信号，调用失败时返回异常，以便集群层按普通调用处理
+     */
+    Throwable awaitFirst() throws InterruptedException {
+        head = queue.poll(timeout, TimeUnit.MILLISECONDS);
+        if (head == null) {
+            close();
+            return new RpcTimeoutException(String.format("stream timeout, request id:%d, timeout:%dms", requestId, timeout));
+        }
+        if (head instanceof Failure) {
+            done = true;
+            channelWrapper.removeStream(requestId);
+            return ((Failure) head).cause;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (head == null) {
+            if (done) {
+                return false;
+            }
+            try {
+                head = queue.poll(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new RpcFrameworkException("stream interrupted, request id:" + requestId, e);
+            }
+            if (head == null) {
+                close();
+                throw new RpcTimeoutException(String.format("stream timeout, request id:%d, timeout:%dms", requestId, timeout));
+            }
+        }
+        if (head == END) {
+            done = true;
+            return false;
+        }
+        if (head instanceof Failure) {
+            done = true;
+            Throwable cause = ((Failure) head).cause;
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new RpcFrameworkException("stream failure, request id:" + requestId, cause);
+        }
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object element = head;
+        head = null;
+        // 消费半个窗口后归还信用，服务端在消费端读完缓存前就能继续发送
+        if (streaming && ++consumed >= Math.max(1, window / 2)) {
+            // 服务端已经发完时不再归还
+            if (channelWrapper.getStream(requestId) != null) {
+                channelWrapper.getChannel().writeAndFlush(StreamFrame.credit(requestId, consumed));
+            }
+            consumed = 0;
+        }
+        return element != NULL ? element : null;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * 提前结束时通知服务端停止发送，已缓存的元素被丢弃
+     */
+    @Override
+    public void close() {
+        if (done) {
+            return;
+        }
+        done = true;
+        head = null;
+        if (channelWrapper.removeStream(requestId) != null && channelWrapper.isActive()
+                && Handshake.getVersion(channelWrapper.getChannel()) >= Constants.PROTOCOL_V2) {
+            channelWrapper.getChannel().writeAndFlush(StreamFrame.cancel(requestId));
+        }
+        queue.clear();
+    }
+
+    private static class Failure {
+        private final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+}
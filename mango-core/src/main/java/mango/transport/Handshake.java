@@ -0,0 +1,33 @@
+package mango.transport;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import mango.util.Constants;
+
+/**
+ * 协议版本协商消息
+ * 始终按v1帧发送，只有帧头，requestId字段携带版本号；
+ * 客户端连接建立后发送自己支持的最高版本，服务端回复双方都支持的版本，之后该连接按协商的版本编码。
+ * 旧版本服务端会忽略该消息，客户端收不到回复就一直使用v1
+ * @author Ricky Fung
+ */
+public class Handshake {
+
+    /** 连接协商后的协议版本，没有协商时为v1 **/
+    public static final AttributeKey<Byte> VERSION = AttributeKey.valueOf("mango.protocol.version");
+
+    private final byte version;
+
+    public Handshake(byte version) {
+        this.version = version;
+    }
+
+    public byte getVersion() {
+        return version;
+    }
+
+    public static byte getVersion(Channel channel) {
+        Byte version = channel.attr(VERSION).get();
+        return version != null ? version : Constants.PROTOCOL_V1;
+    }
+}
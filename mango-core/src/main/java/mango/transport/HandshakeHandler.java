@@ -0,0 +1,49 @@
+package mango.transport;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import mango.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 协议版本协商处理器，放在编解码器之后
+ * @author Ricky Fung
+ */
+public class HandshakeHandler extends ChannelInboundHandlerAdapter {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final boolean client;
+    // 本端支持的最高版本
+    private final byte maxVersion;
+
+    public HandshakeHandler(boolean client, int maxVersion) {
+        this.client = client;
+        this.maxVersion = (byte) Math.max(Constants.PROTOCOL_V1, Math.min(maxVersion, Constants.PROTOCOL_V2));
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (client && maxVersion > Constants.PROTOCOL_V1) {
+            ctx.writeAndFlush(new Handshake(maxVersion));
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Handshake)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        byte version = (byte) Math.min(((Handshake) msg).getVersion(), maxVersion);
+        if (!client) {
+            // 回复按v1编码，写出后再切换版本
+            ctx.writeAndFlush(new Handshake(version));
+        }
+        if (version > Constants.PROTOCOL_V1) {
+            ctx.channel().attr(Handshake.VERSION).set(version);
+        }
+        logger.debug("protocol version negotiated: v{}, remote address:{}", version, ctx.channel().remoteAddress());
+    }
+}
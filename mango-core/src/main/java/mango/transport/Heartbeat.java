@@ -0,0 +1,33 @@
+package mango.transport;
+
+/**
+ * 心跳消息
+ * 只有帧头，id为发送方的System.nanoTime()，响应原样带回用于计算RTT
+ * @author Ricky Fung
+ */
+public class Heartbeat {
+
+    private final boolean request;
+    private final long id;
+
+    public Heartbeat(boolean request, long id) {
+        this.request = request;
+        this.id = id;
+    }
+
+    public static Heartbeat ping() {
+        return new Heartbeat(true, System.nanoTime());
+    }
+
+    public Heartbeat pong() {
+        return new Heartbeat(false, id);
+    }
+
+    public boolean isRequest() {
+        return request;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,80 @@
+package mango.transport;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
+import mango.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 心跳处理器，放在IdleStateHandler之后
+ * 客户端读空闲时发送ping，连续多次收不到pong则将连接标记为不可用，收到任何消息都清零丢失次数；
+ * 旧版本服务端不应答ping，只在版本协商到v2后才发送。
+ * 服务端应答ping，收到过ping的连接读空闲时关闭，不发心跳的客户端不受影响
+ * @author Ricky Fung
+ */
+public class HeartbeatHandler extends ChannelInboundHandlerAdapter {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // 连续丢失多少次心跳后标记不可用
+    private static final int MAX_MISSED = 3;
+
+    private final boolean client;
+    // 服务端：对端是否发送过心跳
+    private boolean pinged;
+
+    public HeartbeatHandler(boolean client) {
+        this.client = client;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Heartbeat)) {
+            if (client) {
+                ChannelWrapper channelWrapper = ctx.channel().attr(ChannelWrapper.KEY).get();
+                if (channelWrapper != null) {
+                    channelWrapper.messageReceived();
+                }
+            }
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        Heartbeat heartbeat = (Heartbeat) msg;
+        if (heartbeat.isRequest()) {
+            pinged = true;
+            ctx.writeAndFlush(heartbeat.pong());
+        } else {
+            ChannelWrapper channelWrapper = ctx.channel().attr(ChannelWrapper.KEY).get();
+            if (channelWrapper != null) {
+                channelWrapper.heartbeatReceived(System.nanoTime() - heartbeat.getId());
+            }
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (!(evt instanceof IdleStateEvent)) {
+            super.userEventTriggered(ctx, evt);
+            return;
+        }
+        if (!client) {
+            if (pinged) {
+                logger.info("close idle connection, remote address:{}", ctx.channel().remoteAddress());
+                ctx.close();
+            }
+            return;
+        }
+        // 对端可能不支持心跳，没有协商到v2时不发送也不计数
+        if (Handshake.getVersion(ctx.channel()) < Constants.PROTOCOL_V2) {
+            return;
+        }
+        ChannelWrapper channelWrapper = ctx.channel().attr(ChannelWrapper.KEY).get();
+        if (channelWrapper != null && channelWrapper.heartbeatSent() > MAX_MISSED && channelWrapper.isAvailable()) {
+            logger.warn("heartbeat lost {} times, mark channel unavailable, remote address:{}",
+                    MAX_MISSED, ctx.channel().remoteAddress());
+            channelWrapper.setAvailable(false);
+        }
+        ctx.writeAndFlush(Heartbeat.ping());
+    }
+}
@@ -0,0 +1,146 @@
+package mango.transport;
+
+import mango.metrics.Counter;
+import mango.metrics.Gauge;
+import mango.metrics.Metrics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内所有客户端和服务端连接共享的内存预算，统计等待写出的字节和正在读取、解码的帧
+ * 预算用完时解码器在帧边界关闭autoRead停止读取，客户端拒绝新的调用，服务端对新请求返回BUSY；
+ * 用量降到预算的3/4以下后恢复读取。没有正在解码的帧时总是允许读取一帧，
+ * 待写出的数据占满预算时(例如对端也暂停了读取)仍能逐帧处理，不会互相等待。
+ * 通过-Dmango.memory.budget设置字节数，0表示不限制
+ * @author Ricky Fung
+ */
+public final class MemoryBudget {
+
+    private static volatile long limit = Long.getLong("mango.memory.budget", 0);
+    // 低于该值时恢复暂停读取的连接
+    private static volatile long resumeMark = limit / 4 * 3;
+
+    private static final AtomicLong USED = new AtomicLong();
+    // 其中正在解码的帧占用的字节数
+    private static final AtomicLong DECODING = new AtomicLong();
+    // 等待恢复读取的连接
+    private static final Queue<Runnable> PAUSED = new ConcurrentLinkedQueue<>();
+    // 预算用完时被拒绝的调用数
+    private static final Counter REJECTED = Metrics.counter("memory.budget.rejected");
+    // 连接暂停读取的次数
+    private static final Counter PAUSES = Metrics.counter("memory.budget.paused");
+
+    static {
+        if (limit > 0) {
+            Metrics.registerGauge("memory.budget.used", new Gauge() {
+                @Override
+                public long getValue() {
+                    return USED.get();
+                }
+            });
+        }
+    }
+
+    private MemoryBudget() {}
+
+    public static boolean isEnabled() {
+        return limit > 0;
+    }
+
+    public static long getLimit() {
+        return limit;
+    }
+
+    /**
+     * 只用于测试
+     */
+    static void setLimit(long bytes) {
+        limit = bytes;
+        resumeMark = bytes / 4 * 3;
+    }
+
+    public static long getUsed() {
+        return USED.get();
+    }
+
+    /**
+     * 预算已用完，新的调用应当被拒绝
+     */
+    public static boolean isExhausted() {
+        long limit = MemoryBudget.limit;
+        return limit > 0 && USED.get() >= limit;
+    }
+
+    /**
+     * 拒绝一次调用，只用于计数
+     */
+    public static void rejected() {
+        REJECTED.inc();
+    }
+
+    /**
+     * 为即将读取的帧预留内存，单帧最多预留整个预算，避免帧头声明的超大长度长期占住预算
+     * @return 实际预留的字节数，超出预算并且有其他帧正在解码时返回0
+     */
+    static long tryReserve(long bytes) {
+        long limit = MemoryBudget.limit;
+        bytes = Math.min(bytes, limit);
+        for (;;) {
+            long used = USED.get();
+            if (used + bytes > limit && DECODING.get() > 0) {
+                return 0;
+            }
+            if (USED.compareAndSet(used, used + bytes)) {
+                DECODING.addAndGet(bytes);
+                return bytes;
+            }
+        }
+    }
+
+    /**
+     * 归还解码完成的帧预留的内存
+     */
+    static void releaseDecoded(long bytes) {
+        DECODING.addAndGet(-bytes);
+        release(bytes);
+    }
+
+    /**
+     * 待写出的数据已经编码完成，无法拒绝，直接计入
+     */
+    static void reserve(long bytes) {
+        USED.addAndGet(bytes);
+    }
+
+    static void release(long bytes) {
+        USED.addAndGet(-bytes);
+        if (!PAUSED.isEmpty() && canResume()) {
+            resumeAll();
+        }
+    }
+
+    /**
+     * 登记暂停读取的连接，用量降到恢复水位以下时执行resume
+     */
+    static void pause(Runnable resume) {
+        PAUSES.inc();
+        PAUSED.offer(resume);
+        // 登记前用量可能已经下降，没有人再触发恢复
+        if (canResume()) {
+            resumeAll();
+        }
+    }
+
+    private static boolean canResume() {
+        return USED.get() < resumeMark || DECODING.get() == 0;
+    }
+
+    private static void resumeAll() {
+        Runnable resume;
+        while ((resume = PAUSED.poll()) != null) {
+            resume.run();
+        }
+    }
+}
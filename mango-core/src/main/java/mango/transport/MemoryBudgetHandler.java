@@ -0,0 +1,40 @@
+package mango.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * 把编码后等待写出的字节计入内存预算，写出或失败后归还
+ * 放在pipeline最前面，看到的是编码器输出的ByteBuf
+ * @author Ricky Fung
+ */
+@ChannelHandler.Sharable
+class MemoryBudgetHandler extends ChannelOutboundHandlerAdapter {
+
+    static final MemoryBudgetHandler INSTANCE = new MemoryBudgetHandler();
+
+    private MemoryBudgetHandler() {}
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf) {
+            final int bytes = ((ByteBuf) msg).readableBytes();
+            if (bytes > 0) {
+                MemoryBudget.reserve(bytes);
+                promise = promise.unvoid();
+                promise.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        MemoryBudget.release(bytes);
+                    }
+                });
+            }
+        }
+        ctx.write(msg, promise);
+    }
+}
@@ -16,13 +16,34 @@ public interface NettyClient extends Endpoint {
      * 反射调用方法（同步）
      */
     Response invokeSync(final Request request) throws InterruptedException, TransportException;
+    /**
+     * 同步调用，客户端被多个服务共享时使用调用方服务的超时时间
+     */
+    Response invokeSync(final Request request, int timeout) throws InterruptedException, TransportException;
     /**
      * 反射调用方法（异步）
      */
-    ResponseFuture invokeAsync(final Request request) throws InterruptedException, TransportException;
+    ResponseFuture<Response> invokeAsync(final Request request) throws InterruptedException, TransportException;
+    /**
+     * 异步调用，指定超时时间(ms)
+     */
+    ResponseFuture<Response> invokeAsync(final Request request, int timeout) throws InterruptedException, TransportException;
     /**
      * 反射调用方法（单线程）
      */
     void invokeOneway(final Request request) throws InterruptedException, TransportException;
+    /**
+     * 流式调用，收到第一个元素或结束信号后返回，结果为ClientStream
+     */
+    Response invokeStream(final Request request) throws InterruptedException, TransportException;
+    /**
+     * 流式调用，指定等待每个元素的超时时间(ms)和消费端窗口
+     */
+    Response invokeStream(final Request request, int timeout, int window) throws InterruptedException, TransportException;
+
+    /**
+     * 所有可用连接都已饱和
+     */
+    boolean isSaturated();
 
 }
@@ -2,24 +2,23 @@ package mango.transport;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import mango.common.URL;
 import mango.common.URLParam;
 import mango.core.*;
+import mango.exception.RpcBusyException;
 import mango.exception.RpcFrameworkException;
+import mango.exception.RpcTimeoutException;
 import mango.exception.TransportException;
+import mango.metrics.Counter;
+import mango.metrics.Metrics;
 import mango.util.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.*;
 
 /**
@@ -28,18 +27,27 @@ import java.util.concurrent.*;
  * @author Ricky Fung
  */
 public class NettyClientImpl extends AbstractClient {
-    // 时间循环组
-    private EventLoopGroup group = new NioEventLoopGroup();
+    // 连接饱和时每次等待的最长时间(ms)，超过后重新从连接池选择，以便用上新扩容或恢复的连接
+    private static final long SATURATED_WAIT_SLICE = 10;
+
+    // 所有客户端共享的IO线程和定时器
+    private final ClientResources resources;
     private Bootstrap b = new Bootstrap();
 
-    private final ConcurrentHashMap<Long, ResponseFuture> responseFutureMap = new ConcurrentHashMap<>(256);
-    // 定时任务线程池
-    private ScheduledExecutorService scheduledExecutorService;
+    // 回收空闲连接的定时任务
+    private ScheduledFuture<?> scanPoolTask;
+    // 超时请求数
+    private final Counter timeoutCounter;
+    // 遇到连接饱和的请求数
+    private final Counter saturatedCounter;
     private int timeout;
+    // 连接饱和时是否直接失败
+    private final boolean failfast;
     // 是否初始化
     private volatile boolean initializing;
 
-    private volatile ChannelWrapper channelWrapper;
+    // 到服务提供者的连接池
+    private volatile ChannelPool channelPool;
 
     public NettyClientImpl(URL url) {
         super(url);
@@ -48,15 +56,19 @@ public class NettyClientImpl extends AbstractClient {
         // 获取超时时间
         this.timeout = url.getIntParameter(URLParam.requestTimeout.getName(), URLParam.requestTimeout.getIntValue());
 
-        this.scheduledExecutorService = new ScheduledThreadPoolExecutor(5,
-                new DefaultThreadFactory(String.format("%s-%s", Constants.FRAMEWORK_NAME, "future")));
-        // 每隔5秒清理一次超时Future
-        this.scheduledExecutorService.scheduleAtFixedRate(new Runnable() {
+        this.failfast = "failfast".equals(url.getParameter(URLParam.backpressure.getName(), URLParam.backpressure.getValue()));
+
+        this.timeoutCounter = Metrics.counter("client.timeout." + url.getHost() + ":" + url.getPort());
+        this.saturatedCounter = Metrics.counter("client.saturated." + url.getHost() + ":" + url.getPort());
+
+        this.resources = ClientResources.retain();
+        // 每隔5秒回收一次空闲连接，请求超时由时间轮单独处理
+        this.scanPoolTask = resources.getTimer().scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
-                scanRpcFutureTable();
+                scanChannelPool();
             }
-        }, 0, 5000, TimeUnit.MILLISECONDS);
+        }, 5000, 5000, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -76,31 +88,54 @@ public class NettyClientImpl extends AbstractClient {
         // 最大响应包限制
         final int maxContentLength = url.getIntParameter(URLParam.maxContentLength.getName(),
                 URLParam.maxContentLength.getIntValue());
+        // 读空闲超过心跳间隔时发送心跳
+        final int heartbeat = url.getIntParameter(URLParam.heartbeat.getName(), URLParam.heartbeat.getIntValue());
+        final int codecVersion = url.getIntParameter(URLParam.codecVersion.getName(), URLParam.codecVersion.getIntValue());
         // 通过netty服务端发送信息给客户端
-        b.group(group).channel(NioSocketChannel.class)
+        NettyTransport transport = NettyTransport.of(url);
+        transport.configure(b, url);
+        b.group(resources.getIoGroup(transport)).channel(transport.socketChannelClass())
                 .option(ChannelOption.TCP_NODELAY, true)
                 .option(ChannelOption.SO_KEEPALIVE, true)
                 .option(ChannelOption.SO_RCVBUF, url.getIntParameter(URLParam.bufferSize.getName(), URLParam.bufferSize.getIntValue()))
                 .option(ChannelOption.SO_SNDBUF, url.getIntParameter(URLParam.bufferSize.getName(), URLParam.bufferSize.getIntValue()))
-                .handler(new ChannelInitializer<SocketChannel>() {
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        url.getIntParameter(URLParam.writeBufferLowWaterMark.getName(), URLParam.writeBufferLowWaterMark.getIntValue()),
+                        url.getIntParameter(URLParam.writeBufferHighWaterMark.getName(), URLParam.writeBufferHighWaterMark.getIntValue())))
+                .handler(new ChannelInitializer<Channel>() {
                     @Override
-                    public void initChannel(SocketChannel ch) throws Exception {
+                    public void initChannel(Channel ch) throws Exception {
                         ch.pipeline().addLast(
                                 // 解码工具
                                 new NettyDecoder(codec, url, maxContentLength, Constants.HEADER_SIZE, 4),
                                 // 加密工具
                                 new NettyEncoder(codec, url),
-                                // 客户端消息处理工具
-                                new NettyClientHandler());
+                                // 协商帧头版本
+                                new HandshakeHandler(true, codecVersion));
+                        if (heartbeat > 0) {
+                            ch.pipeline().addLast(new IdleStateHandler(heartbeat, 0, 0, TimeUnit.MILLISECONDS),
+                                    new HeartbeatHandler(true));
+                        }
+                        // 客户端消息处理工具
+                        ch.pipeline().addLast(new NettyClientHandler());
+                        if (MemoryBudget.isEnabled()) {
+                            ch.pipeline().addFirst(MemoryBudgetHandler.INSTANCE);
+                        }
                     }
                 });
 
         try {
-            ChannelFuture channelFuture = b.connect(this.remoteAddress).sync();
-            this.channelWrapper = new ChannelWrapper(channelFuture);
-        } catch (InterruptedException e) {
+            this.channelPool = new ChannelPool(b, this.remoteAddress, url, resources.getTimer());
+            this.channelPool.init();
+        } catch (Exception e) {
+            // 连接失败时清理半初始化的连接池，允许之后重新open
+            if (this.channelPool != null) {
+                this.channelPool.close();
+                this.channelPool = null;
+            }
+            initializing = false;
             logger.error(String.format("NettyClient connect to address:%s failure", this.remoteAddress), e);
-            throw new RpcFrameworkException(String.format("NettyClient connect to address:%s failure"), e);
+            throw new RpcFrameworkException(String.format("NettyClient connect to address:%s failure", this.remoteAddress), e);
         }
 
         state = ChannelState.AVAILABLE;
@@ -109,7 +144,15 @@ public class NettyClientImpl extends AbstractClient {
 
     @Override
     public boolean isAvailable() {
-        return state.isAvailable();
+        // 所有连接心跳都失败时不可用，负载均衡会跳过该提供者
+        ChannelPool pool = this.channelPool;
+        return state.isAvailable() && (pool == null || pool.isAvailable());
+    }
+
+    @Override
+    public boolean isSaturated() {
+        ChannelPool pool = this.channelPool;
+        return pool != null && pool.isSaturated();
     }
 
     @Override
@@ -124,73 +167,115 @@ public class NettyClientImpl extends AbstractClient {
 
     @Override
     public Response invokeSync(final Request request) throws InterruptedException, TransportException {
-        Channel channel = getChannel();
-        if (channel != null && channel.isActive()) {
-            final ResponseFuture<Response> rpcFuture = new DefaultResponseFuture<>(timeout);
-            this.responseFutureMap.put(request.getRequestId(), rpcFuture);
-            //写数据
-            channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-
-                    if (future.isSuccess()) {
-                        logger.info("send success, request id:{}", request.getRequestId());
-
-                    } else {
-                        logger.info("send failure, request id:{}", request.getRequestId());
-                        responseFutureMap.remove(request.getRequestId());
-                        rpcFuture.setFailure(future.cause());
-                    }
+        return invokeSync(request, timeout);
+    }
+
+    @Override
+    public Response invokeSync(final Request request, int timeout) throws InterruptedException, TransportException {
+        final long start = System.nanoTime();
+        final ChannelWrapper channelWrapper = acquireChannel(request, timeout, start);
+        // 等待连接名额的时间计入请求超时
+        final ResponseFuture<Response> rpcFuture = newFuture(channelWrapper, request, remainingTimeout(channelWrapper, request, timeout, start));
+        //写数据
+        channelWrapper.write(request).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+
+                if (future.isSuccess()) {
+                    logger.info("send success, request id:{}", request.getRequestId());
+
+                } else {
+                    logger.info("send failure, request id:{}", request.getRequestId());
+                    channelWrapper.removeFuture(request.getRequestId());
+                    rpcFuture.setFailure(future.cause());
                 }
-            });
-            return rpcFuture.get();
-        } else {
-            throw new TransportException("channel not active. request id:"+request.getRequestId());
-        }
+            }
+        });
+        return rpcFuture.get();
     }
 
     @Override
-    public ResponseFuture invokeAsync(final Request request) throws InterruptedException, TransportException {
-        Channel channel = getChannel();
-        if (channel != null && channel.isActive()) {
-
-            final ResponseFuture<Response> rpcFuture = new DefaultResponseFuture<>(timeout);
-            this.responseFutureMap.put(request.getRequestId(), rpcFuture);
-            //写数据
-            channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-
-                    if (future.isSuccess()) {
-                        logger.info("send success, request id:{}", request.getRequestId());
-                    }
+    public ResponseFuture<Response> invokeAsync(final Request request) throws InterruptedException, TransportException {
+        return invokeAsync(request, timeout);
+    }
+
+    @Override
+    public ResponseFuture<Response> invokeAsync(final Request request, int timeout) throws InterruptedException, TransportException {
+        final long start = System.nanoTime();
+        final ChannelWrapper channelWrapper = acquireChannel(request, timeout, start);
+        // 等待连接名额的时间计入请求超时
+        final ResponseFuture<Response> rpcFuture = newFuture(channelWrapper, request, remainingTimeout(channelWrapper, request, timeout, start));
+        //写数据
+        channelWrapper.write(request).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+
+                if (future.isSuccess()) {
+                    logger.info("send success, request id:{}", request.getRequestId());
+                } else {
+                    logger.info("send failure, request id:{}", request.getRequestId());
+                    channelWrapper.removeFuture(request.getRequestId());
+                    rpcFuture.setFailure(future.cause());
                 }
-            });
-            return rpcFuture;
-        } else {
-            throw new TransportException("channel not active. request id:"+request.getRequestId());
-        }
+            }
+        });
+        return rpcFuture;
     }
 
     @Override
     public void invokeOneway(final Request request) throws InterruptedException, TransportException {
-        Channel channel = getChannel();
-        if (channel != null && channel.isActive()) {
-            //写数据
-            channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-
-                    if (future.isSuccess()) {
-                        logger.info("send success, request id:{}", request.getRequestId());
-                    } else {
-                        logger.info("send failure, request id:{}", request.getRequestId());
-                    }
+        final ChannelWrapper channelWrapper = acquireChannel(request, timeout);
+        //写数据
+        channelWrapper.write(request).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                // 不等待响应，写出后即归还名额
+                channelWrapper.release();
+                if (future.isSuccess()) {
+                    logger.info("send success, request id:{}", request.getRequestId());
+                } else {
+                    logger.info("send failure, request id:{}", request.getRequestId());
+                }
+            }
+        });
+    }
+
+    @Override
+    public Response invokeStream(final Request request) throws InterruptedException, TransportException {
+        return invokeStream(request, timeout, URLParam.streamWindow.getIntValue());
+    }
+
+    @Override
+    public Response invokeStream(final Request request, int timeout, int window) throws InterruptedException, TransportException {
+        final ChannelWrapper channelWrapper = acquireChannel(request, timeout);
+        // 初始信用是流的一部分，服务端需要知道，只在流式请求中携带
+        request.setAttachment(URLParam.streamWindow.getName(), String.valueOf(window));
+        final ClientStream stream = new ClientStream(channelWrapper, request.getRequestId(), window, timeout);
+        channelWrapper.addStream(request.getRequestId(), stream);
+        //写数据
+        channelWrapper.write(request).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    logger.info("send failure, request id:{}", request.getRequestId());
+                    channelWrapper.removeStream(request.getRequestId());
+                    stream.onFailure(future.cause());
                 }
-            });
+            }
+        });
+        DefaultResponse response = new DefaultResponse();
+        response.setRequestId(request.getRequestId());
+        Throwable cause = stream.awaitFirst();
+        if (cause == null) {
+            response.setResult(stream);
         } else {
-            throw new TransportException("channel not active. request id:"+request.getRequestId());
+            if (cause instanceof RpcTimeoutException) {
+                timeoutCounter.inc();
+            }
+            response.setException(cause instanceof Exception ? (Exception) cause
+                    : new TransportException("stream failure, request id:" + request.getRequestId(), cause));
         }
+        return response;
     }
 
     @Override
@@ -207,8 +292,12 @@ public class NettyClientImpl extends AbstractClient {
         }
 
         try {
-            this.scheduledExecutorService.shutdown();
-            this.group.shutdownGracefully();
+            this.scanPoolTask.cancel(false);
+            // IO线程是共享的，只关闭自己的连接
+            if (this.channelPool != null) {
+                this.channelPool.close();
+            }
+            ClientResources.release();
 
             state = ChannelState.CLOSED;
         } catch (Exception e) {
@@ -228,61 +317,162 @@ public class NettyClientImpl extends AbstractClient {
                 throws Exception {
 
             logger.info("client read msg:{}, ", msg);
-            if(msg instanceof Response) {
+            if (msg instanceof StreamFrame) {
+                Response response = ((StreamFrame) msg).getResponse();
+                ChannelWrapper channelWrapper = ctx.channel().attr(ChannelWrapper.KEY).get();
+                ClientStream stream = channelWrapper != null ? channelWrapper.getStream(response.getRequestId()) : null;
+                if (stream != null) {
+                    stream.onNext(response.getResult());
+                }
+            } else if(msg instanceof Response) {
                 DefaultResponse response = (DefaultResponse) msg;
 
-                ResponseFuture<Response> rpcFuture =responseFutureMap.get(response.getRequestId());
+                ChannelWrapper channelWrapper = ctx.channel().attr(ChannelWrapper.KEY).get();
+                // 不带流式标记的响应结束对应的流
+                ClientStream stream = channelWrapper != null ? channelWrapper.removeStream(response.getRequestId()) : null;
+                if (stream != null) {
+                    stream.onComplete(response);
+                    return;
+                }
+                ResponseFuture<Response> rpcFuture = channelWrapper != null ? channelWrapper.removeFuture(response.getRequestId()) : null;
                 if(rpcFuture!=null) {
-                    responseFutureMap.remove(response.getRequestId());
                     rpcFuture.setResult(response);
                 }
 
             }
         }
 
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            // 写缓冲区降到低水位以下，唤醒等待连接的调用线程
+            ChannelWrapper channelWrapper = ctx.channel().attr(ChannelWrapper.KEY).get();
+            if (channelWrapper != null && ctx.channel().isWritable()) {
+                channelWrapper.signalCapacity();
+            }
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            failPending(ctx, new TransportException("channel inactive, remote address:" + ctx.channel().remoteAddress()));
+            super.channelInactive(ctx);
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
                 throws Exception {
             logger.error("client caught exception", cause);
+            failPending(ctx, new TransportException("channel exception, remote address:" + ctx.channel().remoteAddress(), cause));
             ctx.close();
         }
-    }
-
-    private Channel getChannel() throws InterruptedException {
 
-        if (this.channelWrapper != null && this.channelWrapper.isActive()) {
-            return this.channelWrapper.getChannel();
+        /**
+         * 连接上已发出的请求不会再收到响应，立即失败以便集群层重试
+         */
+        private void failPending(ChannelHandlerContext ctx, Throwable cause) {
+            ChannelWrapper channelWrapper = ctx.channel().attr(ChannelWrapper.KEY).get();
+            if (channelWrapper != null) {
+                channelWrapper.failFutures(cause);
+            }
         }
+    }
 
-        synchronized (this){
-            // 发起异步连接操作
-            ChannelFuture channelFuture = b.connect(this.remoteAddress).sync();
-            this.channelWrapper = new ChannelWrapper(channelFuture);
+    /**
+     * 从连接池中获取连接，没有可用连接时返回null，不等待重连
+     */
+    private ChannelWrapper getChannel() {
+        ChannelPool pool = this.channelPool;
+        if (pool == null) {
+            throw new TransportException("NettyClient not open: url=" + url.getUri());
         }
-
-        return this.channelWrapper.getChannel();
+        return pool.acquire();
     }
 
-    /**定时清理超时Future**/
-    private void scanRpcFutureTable() {
+    private ChannelWrapper acquireChannel(Request request, int timeout) throws InterruptedException {
+        return acquireChannel(request, timeout, System.nanoTime());
+    }
 
-        long currentTime = System.currentTimeMillis();
-        logger.info("scan timeout RpcFuture, currentTime:{}", currentTime);
+    /**
+     * 从连接池中获取连接并占用一个请求名额
+     * 进程内存预算用完时直接拒绝；连接饱和时按backpressure策略直接失败，或在请求超时时间内等待名额归还、连接恢复可写，
+     * 抛出的RpcBusyException由集群策略转到其他提供者
+     */
+    private ChannelWrapper acquireChannel(Request request, int timeout, long start) throws InterruptedException {
+        if (MemoryBudget.isExhausted()) {
+            MemoryBudget.rejected();
+            throw new RpcBusyException(String.format("memory budget exhausted, request id:%d, used:%d, limit:%d",
+                    request.getRequestId(), MemoryBudget.getUsed(), MemoryBudget.getLimit()));
+        }
+        ChannelWrapper channelWrapper = getChannel();
+        if (channelWrapper == null || !channelWrapper.isActive()) {
+            throw new TransportException("channel not active. request id:"+request.getRequestId());
+        }
+        if (channelWrapper.tryAcquire()) {
+            return channelWrapper;
+        }
+        saturatedCounter.inc();
+        if (failfast) {
+            throw new RpcBusyException(String.format("connection saturated, request id:%d, remote address:%s",
+                    request.getRequestId(), remoteAddress));
+        }
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (;;) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new RpcBusyException(String.format("connection saturated, request id:%d, wait:%dms, remote address:%s",
+                        request.getRequestId(), timeout, remoteAddress));
+            }
+            channelWrapper.awaitCapacity(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(SATURATED_WAIT_SLICE)), TimeUnit.NANOSECONDS);
+            channelWrapper = getChannel();
+            if (channelWrapper == null || !channelWrapper.isActive()) {
+                throw new TransportException("channel not active. request id:"+request.getRequestId());
+            }
+            if (channelWrapper.tryAcquire()) {
+                return channelWrapper;
+            }
+        }
+    }
 
-        final List<ResponseFuture> timeoutFutureList = new ArrayList<>();
-        Iterator<Map.Entry<Long, ResponseFuture>> it = this.responseFutureMap.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<Long, ResponseFuture> next = it.next();
-            ResponseFuture future = next.getValue();
+    /**
+     * 扣除等待连接名额的时间后剩余的超时时间(ms)，已用完时归还名额并直接超时
+     */
+    private int remainingTimeout(ChannelWrapper channelWrapper, Request request, int timeout, long start) {
+        long remaining = timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (remaining <= 0) {
+            channelWrapper.release();
+            timeoutCounter.inc();
+            throw new RpcTimeoutException(String.format("request timeout while waiting for connection, request id:%d, timeout:%dms, remote address:%s",
+                    request.getRequestId(), timeout, remoteAddress));
+        }
+        return (int) remaining;
+    }
 
-            if (future.isTimeout()) {  //超时
-                it.remove();
-                timeoutFutureList.add(future);
+    /**
+     * 创建请求对应的Future并在时间轮上登记超时任务
+     */
+    private ResponseFuture<Response> newFuture(final ChannelWrapper channelWrapper, final Request request, final int timeout) {
+        final long requestId = request.getRequestId();
+        DefaultResponseFuture<Response> rpcFuture = new DefaultResponseFuture<>(timeout);
+        channelWrapper.addFuture(requestId, rpcFuture);
+        rpcFuture.setTimeoutTask(resources.getWheelTimer().newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout t) throws Exception {
+                ResponseFuture<Response> future = channelWrapper.removeFuture(requestId);
+                if (future != null) {
+                    timeoutCounter.inc();
+                    future.setFailure(new RpcTimeoutException(String.format("request timeout, request id:%d, timeout:%dms, remote address:%s",
+                            requestId, timeout, remoteAddress)));
+                }
             }
-        }
+        }, timeout, TimeUnit.MILLISECONDS));
+        return rpcFuture;
+    }
 
-        for (ResponseFuture future : timeoutFutureList) {
-            //释放资源
+    /**定时回收空闲连接**/
+    private void scanChannelPool() {
+        ChannelPool pool = this.channelPool;
+        if (pool != null) {
+            pool.shrink();
         }
     }
 }
@@ -1,17 +1,29 @@
 package mango.transport;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import mango.codec.Codec;
+import mango.codec.Compressor;
+import mango.codec.Compressors;
+import mango.codec.Serializer;
+import mango.codec.Serializers;
+import mango.codec.VarInts;
 import mango.common.URL;
+import mango.common.URLParam;
 import mango.core.DefaultResponse;
 import mango.core.Response;
+import mango.core.extension.ExtensionLoader;
+import mango.exception.RpcBusyException;
 import mango.exception.RpcFrameworkException;
+import mango.metrics.Metrics;
 import mango.util.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 /**
  * ${DESCRIPTION}
  * Netty 解码工具
@@ -23,21 +35,53 @@ public class NettyDecoder extends LengthFieldBasedFrameDecoder {
     private int maxFrameLength;
     private Codec codec;
     private URL url;
+    // 是否直接将帧的切片交给序列化器
+    private boolean zeroCopy;
+    // v2帧序列化器id为0时使用本端配置的序列化器
+    private final Serializer defaultSerializer;
+    // 当前帧在内存预算中预留的字节数
+    private long reserved;
+    // 内存预算用完，暂停读取
+    private boolean paused;
 
     public NettyDecoder(Codec codec, URL url, int maxFrameLength, int lengthFieldOffset, int lengthFieldLength) {
         super(maxFrameLength, lengthFieldOffset, lengthFieldLength);
         this.codec = codec;
         this.url = url;
         this.maxFrameLength = maxFrameLength;
+        this.zeroCopy = url.getBooleanParameter(URLParam.zeroCopy.getName(), URLParam.zeroCopy.isBoolValue());
+        this.defaultSerializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(
+                url.getParameter(URLParam.serialization.getName(), URLParam.serialization.getValue()));
     }
 
     @Override
     protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
-        if (in == null) {
+        if (in == null || paused) {
             return null;
         }
+        if (!MemoryBudget.isEnabled()) {
+            return decodeFrame(ctx, in);
+        }
+        try {
+            Object message = decodeFrame(ctx, in);
+            // 整帧处理完后归还预留的内存
+            if (message != null) {
+                releaseReserved();
+            }
+            return message;
+        } catch (Exception e) {
+            releaseReserved();
+            throw e;
+        }
+    }
+
+    private Object decodeFrame(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        // v1帧第3个字节是消息类型，v2帧是版本号，每一帧单独判断
+        if (in.readableBytes() > 2 && in.getByte(in.readerIndex() + 2) == Constants.PROTOCOL_V2) {
+            return decodeV2(ctx, in);
+        }
 
-        if (in.readableBytes() <= Constants.HEADER_SIZE) {
+        if (in.readableBytes() < Constants.HEADER_SIZE) {
             return null;
         }
 
@@ -53,13 +97,8 @@ public class NettyDecoder extends LengthFieldBasedFrameDecoder {
         long requestId = in.readLong();
         int dataLength = in.readInt();
 
-        // FIXME 如果dataLength过大，可能导致问题
-        if (in.readableBytes() < dataLength) {
-            in.resetReaderIndex();
-            return null;
-        }
-
-        if (maxFrameLength > 0 && dataLength > maxFrameLength) {
+        // 先检查长度再预留内存、等待数据，超长的帧不会在缓冲区和内存预算中积累
+        if (dataLength < 0 || (maxFrameLength > 0 && dataLength > maxFrameLength)) {
             logger.warn(
                     "NettyDecoder transport data content length over of limit, size: {}  > {}. remote={} local={}",
                     dataLength, maxFrameLength, ctx.channel().remoteAddress(), ctx.channel()
@@ -75,21 +114,271 @@ public class NettyDecoder extends LengthFieldBasedFrameDecoder {
                 throw e;
             }
         }
+        if (!reserve(ctx, dataLength)) {
+            in.resetReaderIndex();
+            return null;
+        }
+        if (in.readableBytes() < dataLength) {
+            in.resetReaderIndex();
+            return null;
+        }
+
+        if (messageType == Constants.FLAG_HEARTBEAT_REQUEST || messageType == Constants.FLAG_HEARTBEAT_RESPONSE) {
+            in.skipBytes(dataLength);
+            return new Heartbeat(messageType == Constants.FLAG_HEARTBEAT_REQUEST, requestId);
+        }
+
+        if (messageType == Constants.FLAG_RESPONSE_BUSY) {
+            in.skipBytes(dataLength);
+            return buildExceptionResponse(requestId, new RpcBusyException("server busy, reject request id:" + requestId));
+        }
+
+        if (messageType == Constants.FLAG_HANDSHAKE) {
+            in.skipBytes(dataLength);
+            return new Handshake((byte) requestId);
+        }
+
+        try {
+            return decodeBody(messageType, in, dataLength);
+        } catch (Exception e) {
+            return decodeFailed(ctx, messageType, requestId, e);
+        }
+    }
+
+    /**
+     * v2帧：magic(2) version(1) flags(1) serializer(1) status(1) requestId(varint) length(varint) body
+     * 心跳、BUSY只看帧头，不解析消息体
+     */
+    private Object decodeV2(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        // 至少有固定部分和各1字节的requestId、长度
+        if (in.readableBytes() < Constants.V2_FIXED_HEADER_SIZE + 2) {
+            return null;
+        }
+        int start = in.readerIndex();
+        short magicType = in.getShort(start);
+        if (magicType != Constants.NETTY_MAGIC_TYPE) {
+            throw new RpcFrameworkException("RpcDecoder transport header not support, type: " + magicType);
+        }
+        byte flags = in.getByte(start + 3);
+        byte serializerId = in.getByte(start + 4);
+        byte status = in.getByte(start + 5);
+
+        in.readerIndex(start + Constants.V2_FIXED_HEADER_SIZE);
+        if (VarInts.readableSize(in, VarInts.MAX_VARLONG_SIZE) == 0) {
+            in.readerIndex(start);
+            return null;
+        }
+        long requestId = VarInts.read(in);
+        if (VarInts.readableSize(in, VarInts.MAX_VARINT_SIZE) == 0) {
+            in.readerIndex(start);
+            return null;
+        }
+        long length = VarInts.read(in);
+        boolean response = (flags & Constants.V2_FLAG_RESPONSE) != 0;
+        byte messageType = response ? Constants.FLAG_RESPONSE : Constants.FLAG_REQUEST;
+
+        // 先检查长度再等待数据，超长的帧不会在缓冲区中积累
+        if (length > Integer.MAX_VALUE || (maxFrameLength > 0 && length > maxFrameLength)) {
+            logger.warn("NettyDecoder transport data content length over of limit, size: {}  > {}. remote={} local={}",
+                    length, maxFrameLength, ctx.channel().remoteAddress(), ctx.channel().localAddress());
+            Exception e = new RpcFrameworkException("NettyDecoder transport data content length over of limit, size: "
+                    + length + " > " + maxFrameLength);
+            if (!response) {
+                ctx.write(buildExceptionResponse(requestId, e));
+            }
+            throw e;
+        }
+        int dataLength = (int) length;
+        if (!reserve(ctx, dataLength)) {
+            in.readerIndex(start);
+            return null;
+        }
+        if (in.readableBytes() < dataLength) {
+            in.readerIndex(start);
+            return null;
+        }
+
+        if ((flags & Constants.V2_FLAG_HEARTBEAT) != 0) {
+            in.skipBytes(dataLength);
+            return new Heartbeat(!response, requestId);
+        }
+        if (response && status == Constants.V2_STATUS_BUSY) {
+            in.skipBytes(dataLength);
+            return buildExceptionResponse(requestId, new RpcBusyException("server busy, reject request id:" + requestId));
+        }
+
+        boolean streaming = (flags & Constants.V2_FLAG_STREAMING) != 0;
+        if (streaming && !response) {
+            int bodyIndex = in.readerIndex();
+            if (dataLength == 0 || VarInts.readableSize(in, Math.min(dataLength, VarInts.MAX_VARINT_SIZE)) == 0) {
+                throw new RpcFrameworkException("NettyDecoder malformed stream credit frame, request id:" + requestId);
+            }
+            int credits = (int) VarInts.read(in);
+            in.readerIndex(bodyIndex + dataLength);
+            return StreamFrame.credit(requestId, credits);
+        }
+
+        ByteBuf body = readBodyV2(in, dataLength);
+        try {
+            if ((flags & Constants.V2_FLAG_COMPRESSED) != 0) {
+                ByteBuf compressed = body;
+                body = decompress(compressed, response);
+                compressed.release();
+            }
+            Serializer serializer = Serializers.getSerializer(serializerId);
+            Object message = codec.decode(serializer != null ? serializer : defaultSerializer, messageType, body);
+            return streaming ? StreamFrame.data((Response) message) : message;
+        } catch (Exception e) {
+            return decodeFailed(ctx, messageType, requestId, e);
+        } finally {
+            body.release();
+        }
+    }
 
+    /**
+     * zeroCopy时返回帧的切片，否则把消息体拷贝到堆内存中，帧所在的缓冲区可以立即回收
+     */
+    private ByteBuf readBodyV2(ByteBuf in, int dataLength) {
+        if (zeroCopy) {
+            ByteBuf body = in.retainedSlice(in.readerIndex(), dataLength);
+            in.skipBytes(dataLength);
+            return body;
+        }
         byte[] data = new byte[dataLength];
         in.readBytes(data);
+        return Unpooled.wrappedBuffer(data);
+    }
 
+    /**
+     * 压缩的消息体：压缩器id(1) 原始长度(varint) 压缩数据
+     * 解压后的长度同样受maxFrameLength限制
+     */
+    private ByteBuf decompress(ByteBuf body, boolean response) throws IOException {
+        long begin = System.nanoTime();
+        byte compressorId = body.readByte();
+        if (VarInts.readableSize(body, VarInts.MAX_VARINT_SIZE) == 0) {
+            throw new RpcFrameworkException("NettyDecoder compressed body is truncated");
+        }
+        long originalLength = VarInts.read(body);
+        if (originalLength > Integer.MAX_VALUE || (maxFrameLength > 0 && originalLength > maxFrameLength)) {
+            throw new RpcFrameworkException("NettyDecoder decompressed data length over of limit, size: "
+                    + originalLength + " > " + maxFrameLength);
+        }
+        int length = body.readableBytes();
+        byte[] data;
+        int offset;
+        if (body.hasArray()) {
+            data = body.array();
+            offset = body.arrayOffset() + body.readerIndex();
+        } else {
+            data = new byte[length];
+            body.getBytes(body.readerIndex(), data);
+            offset = 0;
+        }
+        Compressor compressor = Compressors.getCompressor(compressorId);
+        byte[] result = compressor.decompress(data, offset, length, (int) originalLength);
+
+        String prefix = (response ? "client.decompress." : "server.decompress.") + Compressors.getName(compressorId);
+        Metrics.counter(prefix + ".bytes").inc(originalLength);
+        Metrics.counter(prefix + ".nanos").inc(System.nanoTime() - begin);
+        return Unpooled.wrappedBuffer(result);
+    }
+
+    /**
+     * 开始读取一帧前在内存预算中预留消息体长度，预算用完时关闭autoRead，已经在缓冲区中的帧也不再解码
+     */
+    private boolean reserve(final ChannelHandlerContext ctx, int dataLength) {
+        if (!MemoryBudget.isEnabled() || reserved > 0 || dataLength <= 0) {
+            return true;
+        }
+        long bytes = MemoryBudget.tryReserve(dataLength);
+        if (bytes > 0) {
+            reserved = bytes;
+            return true;
+        }
+        paused = true;
+        ctx.channel().config().setAutoRead(false);
+        MemoryBudget.pause(new Runnable() {
+            @Override
+            public void run() {
+                ctx.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        resume(ctx);
+                    }
+                });
+            }
+        });
+        return false;
+    }
+
+    private void resume(ChannelHandlerContext ctx) {
+        if (!paused || ctx.isRemoved()) {
+            return;
+        }
+        paused = false;
+        ctx.channel().config().setAutoRead(true);
+        // 缓冲区中剩余的数据不会再触发读事件，主动解码一次
         try {
-            return codec.decode(url, messageType, data);
+            channelRead(ctx, Unpooled.EMPTY_BUFFER);
         } catch (Exception e) {
-            if (messageType == Constants.FLAG_REQUEST) {
-                Response response = buildExceptionResponse(requestId, e);
-                ctx.write(response);
-                return null;
-            } else {
-                Response response = buildExceptionResponse(requestId, e);
-                return response;
-            }
+            ctx.fireExceptionCaught(e);
+        }
+    }
+
+    private void releaseReserved() {
+        if (reserved > 0) {
+            MemoryBudget.releaseDecoded(reserved);
+            reserved = 0;
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (paused) {
+            // 暂停期间不能像父类那样在没有解码出消息时继续调用read
+            discardSomeReadBytes();
+            ctx.fireChannelReadComplete();
+            return;
+        }
+        super.channelReadComplete(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        try {
+            super.channelInactive(ctx);
+        } finally {
+            paused = false;
+            releaseReserved();
+        }
+    }
+
+    /**
+     * 请求解码失败时直接回复异常，响应解码失败时把异常交给调用方
+     */
+    private Object decodeFailed(ChannelHandlerContext ctx, byte messageType, long requestId, Exception e) {
+        Response response = buildExceptionResponse(requestId, e);
+        if (messageType == Constants.FLAG_REQUEST) {
+            ctx.write(response);
+            releaseReserved();
+            return null;
+        }
+        return response;
+    }
+
+    private Object decodeBody(byte messageType, ByteBuf in, int dataLength) throws Exception {
+        if (!zeroCopy) {
+            byte[] data = new byte[dataLength];
+            in.readBytes(data);
+            return codec.decode(url, messageType, data);
+        }
+        ByteBuf body = in.retainedSlice(in.readerIndex(), dataLength);
+        in.skipBytes(dataLength);
+        try {
+            return codec.decode(url, messageType, body);
+        } finally {
+            body.release();
         }
     }
 
@@ -4,14 +4,31 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import mango.codec.Codec;
+import mango.codec.Compressor;
+import mango.codec.Compressors;
+import mango.codec.Serializer;
+import mango.codec.Serializers;
+import mango.codec.VarInts;
 import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
 import mango.core.DefaultResponse;
 import mango.core.Request;
 import mango.core.Response;
+import mango.core.extension.ExtensionLoader;
+import mango.exception.RpcBusyException;
+import mango.exception.RpcFrameworkException;
+import mango.metrics.Counter;
+import mango.metrics.Metrics;
 import mango.util.Constants;
+import mango.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * ${DESCRIPTION}
  * Netty 加密工具
@@ -21,36 +38,231 @@ public class NettyEncoder extends MessageToByteEncoder {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private Codec codec;
     private URL url;
+    // 是否直接将消息体序列化到out中
+    private boolean zeroCopy;
+    // v2帧使用，创建时确定，不需要每次从URL查找
+    private final Serializer serializer;
+    private final byte serializerId;
+    // v2帧消息体压缩，未配置时为null
+    private final Compressor compressor;
+    private final byte compressorId;
+    private final int compressThreshold;
 
     public NettyEncoder(Codec codec, URL url) {
         this.codec = codec;
         this.url = url;
+        this.zeroCopy = url.getBooleanParameter(URLParam.zeroCopy.getName(), URLParam.zeroCopy.isBoolValue());
+        String serialization = url.getParameter(URLParam.serialization.getName(), URLParam.serialization.getValue());
+        this.serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialization);
+        this.serializerId = Serializers.getId(serialization);
+        String compression = url.getParameter(URLParam.compression.getName(), URLParam.compression.getValue());
+        if (StringUtils.isNotEmpty(compression)) {
+            this.compressorId = Compressors.getId(compression);
+            this.compressor = Compressors.getCompressor(compressorId);
+        } else {
+            this.compressorId = 0;
+            this.compressor = null;
+        }
+        this.compressThreshold = url.getIntParameter(URLParam.compressThreshold.getName(), URLParam.compressThreshold.getIntValue());
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
 
+        if (msg instanceof Handshake) {
+            // 协商消息总是按v1编码
+            out.writeShort(Constants.NETTY_MAGIC_TYPE);
+            out.writeByte(Constants.FLAG_HANDSHAKE);
+            out.writeLong(((Handshake) msg).getVersion());
+            out.writeInt(0);
+            return;
+        }
+
+        if (Handshake.getVersion(ctx.channel()) >= Constants.PROTOCOL_V2) {
+            encodeV2(msg, out);
+            return;
+        }
+
+        if (msg instanceof StreamFrame) {
+            throw new RpcFrameworkException("stream frame requires protocol v2, remote address:" + ctx.channel().remoteAddress());
+        }
+
+        if (msg instanceof Heartbeat) {
+            Heartbeat heartbeat = (Heartbeat) msg;
+            out.writeShort(Constants.NETTY_MAGIC_TYPE);
+            out.writeByte(heartbeat.isRequest() ? Constants.FLAG_HEARTBEAT_REQUEST : Constants.FLAG_HEARTBEAT_RESPONSE);
+            out.writeLong(heartbeat.getId());
+            out.writeInt(0);
+            return;
+        }
+
         long requestId = getRequestId(msg);
-        byte[] data = null;
+
+        // v1的BUSY响应按普通响应携带RpcBusyException编码，未升级的对端也能解析
+        int headerIndex = out.writerIndex();
+        out.writeShort(Constants.NETTY_MAGIC_TYPE);
+        out.writeByte(getType(msg));
+        out.writeLong(requestId);
+        // 先占位，消息体写完后回填长度
+        out.writeInt(0);
+        int bodyIndex = out.writerIndex();
 
         if (msg instanceof Response) {
             try {
-                data = codec.encode(url, msg);
+                writeBody(msg, out);
             } catch (Exception e) {
                 logger.error("RpcEncoder encode error, requestId=" + requestId, e);
+                out.writerIndex(bodyIndex);
                 Response response = buildExceptionResponse(requestId, e);
-                data = codec.encode(url, response);
+                writeBody(response, out);
             }
         } else {
-            data = codec.encode(url, msg);
+            writeBody(msg, out);
+        }
+
+        out.setInt(headerIndex + Constants.HEADER_SIZE - 4, out.writerIndex() - bodyIndex);
+    }
+
+    /**
+     * v2帧：magic(2) version(1) flags(1) serializer(1) status(1) requestId(varint) length(varint) body
+     * 消息体直接写入out，长度字段先按最大宽度预留，写完后帧在out开头时把帧头后移去掉多余的字节
+     */
+    private void encodeV2(Object msg, ByteBuf out) throws Exception {
+        if (msg instanceof Heartbeat) {
+            Heartbeat heartbeat = (Heartbeat) msg;
+            byte flags = heartbeat.isRequest() ? Constants.V2_FLAG_HEARTBEAT
+                    : (byte) (Constants.V2_FLAG_HEARTBEAT | Constants.V2_FLAG_RESPONSE);
+            writeV2Header(out, flags, Constants.V2_STATUS_OK, heartbeat.getId(), 0, 1);
+            return;
+        }
+
+        byte flags = 0;
+        if (msg instanceof StreamFrame) {
+            StreamFrame frame = (StreamFrame) msg;
+            if (frame.isCredit()) {
+                // 信用帧的消息体只有一个varint
+                int length = VarInts.size(frame.getCredits());
+                writeV2Header(out, Constants.V2_FLAG_STREAMING, Constants.V2_STATUS_OK, frame.getRequestId(), length, 1);
+                VarInts.write(out, frame.getCredits());
+                return;
+            }
+            flags = Constants.V2_FLAG_STREAMING;
+            msg = frame.getResponse();
         }
 
+        long requestId = getRequestId(msg);
+        byte status = Constants.V2_STATUS_OK;
+        if (msg instanceof DefaultRequest) {
+            if (((DefaultRequest) msg).getType() == Constants.REQUEST_ONEWAY) {
+                flags |= Constants.V2_FLAG_ONEWAY;
+            }
+        } else if (msg instanceof Response) {
+            flags |= Constants.V2_FLAG_RESPONSE;
+            Exception exception = ((Response) msg).getException();
+            if (exception instanceof RpcBusyException) {
+                writeV2Header(out, flags, Constants.V2_STATUS_BUSY, requestId, 0, 1);
+                return;
+            }
+            if (exception != null) {
+                status = Constants.V2_STATUS_ERROR;
+            }
+        }
+
+        int start = out.writerIndex();
+        int reserved = Constants.V2_FIXED_HEADER_SIZE + VarInts.size(requestId) + VarInts.MAX_VARINT_SIZE;
+        out.ensureWritable(reserved);
+        int bodyIndex = start + reserved;
+        out.writerIndex(bodyIndex);
+
+        if (msg instanceof Response) {
+            try {
+                writeBodyV2(msg, out);
+            } catch (Exception e) {
+                logger.error("RpcEncoder encode error, requestId=" + requestId, e);
+                out.writerIndex(bodyIndex);
+                status = Constants.V2_STATUS_ERROR;
+                writeBodyV2(buildExceptionResponse(requestId, e), out);
+            }
+        } else {
+            writeBodyV2(msg, out);
+        }
+
+        if (compressor != null && status == Constants.V2_STATUS_OK
+                && out.writerIndex() - bodyIndex >= compressThreshold && compress(msg, out, bodyIndex)) {
+            flags |= Constants.V2_FLAG_COMPRESSED;
+        }
+
+        int end = out.writerIndex();
+        int bodyLength = end - bodyIndex;
+        int headerIndex = start;
+        int lengthWidth = VarInts.MAX_VARINT_SIZE;
+        if (start == out.readerIndex()) {
+            lengthWidth = VarInts.size(bodyLength);
+            headerIndex = start + VarInts.MAX_VARINT_SIZE - lengthWidth;
+        }
+        out.writerIndex(headerIndex);
+        writeV2Header(out, flags, status, requestId, bodyLength, lengthWidth);
+        out.writerIndex(end);
+        out.readerIndex(headerIndex);
+    }
+
+    /**
+     * 压缩后的消息体：压缩器id(1) 原始长度(varint) 压缩数据
+     * 压缩后没有变小时保留原始消息体，返回false
+     */
+    private boolean compress(Object msg, ByteBuf out, int bodyIndex) throws IOException {
+        long begin = System.nanoTime();
+        int length = out.writerIndex() - bodyIndex;
+        byte[] data;
+        int offset;
+        if (out.hasArray()) {
+            data = out.array();
+            offset = out.arrayOffset() + bodyIndex;
+        } else {
+            data = new byte[length];
+            out.getBytes(bodyIndex, data);
+            offset = 0;
+        }
+        byte[] compressed = compressor.compress(data, offset, length);
+        int compressedLength = 1 + VarInts.size(length) + compressed.length;
+        boolean smaller = compressedLength < length;
+        if (smaller) {
+            out.writerIndex(bodyIndex);
+            out.writeByte(compressorId);
+            VarInts.write(out, length);
+            out.writeBytes(compressed);
+        }
+        CompressionStats.of(msg).record(length, smaller ? compressedLength : length, System.nanoTime() - begin);
+        return smaller;
+    }
+
+    private void writeV2Header(ByteBuf out, byte flags, byte status, long requestId, int bodyLength, int lengthWidth) {
         out.writeShort(Constants.NETTY_MAGIC_TYPE);
-        out.writeByte(getType(msg));
-        out.writeLong(requestId);
-        out.writeInt(data.length);
+        out.writeByte(Constants.PROTOCOL_V2);
+        out.writeByte(flags);
+        out.writeByte(serializerId);
+        out.writeByte(status);
+        VarInts.write(out, requestId);
+        VarInts.write(out, bodyLength, lengthWidth);
+    }
 
-        out.writeBytes(data);
+    /**
+     * v2帧头带有序列化器id，序列化器在创建时确定；关闭zeroCopy时先序列化为byte[]再拷贝
+     */
+    private void writeBodyV2(Object msg, ByteBuf out) throws Exception {
+        if (zeroCopy) {
+            codec.encode(serializer, msg, out);
+        } else {
+            out.writeBytes(codec.encode(url, msg));
+        }
+    }
+
+    private void writeBody(Object msg, ByteBuf out) throws Exception {
+        if (zeroCopy) {
+            codec.encode(url, msg, out);
+        } else {
+            out.writeBytes(codec.encode(url, msg));
+        }
     }
 
     private byte getType(Object message) {
@@ -79,4 +291,50 @@ public class NettyEncoder extends MessageToByteEncoder {
         response.setException(e);
         return response;
     }
+
+    /**
+     * 按服务方法统计压缩效果，压缩率为wire/raw：
+     * {client|server}.compress.{interface}.{method}.raw 压缩前字节数
+     * {client|server}.compress.{interface}.{method}.wire 实际发送的字节数，压缩无效时等于raw
+     * {client|server}.compress.{interface}.{method}.nanos 压缩耗时
+     */
+    private static class CompressionStats {
+        private static final ConcurrentMap<String, CompressionStats> STATS = new ConcurrentHashMap<>();
+
+        private final Counter raw;
+        private final Counter wire;
+        private final Counter nanos;
+
+        private CompressionStats(String prefix) {
+            this.raw = Metrics.counter(prefix + ".raw");
+            this.wire = Metrics.counter(prefix + ".wire");
+            this.nanos = Metrics.counter(prefix + ".nanos");
+        }
+
+        static CompressionStats of(Object msg) {
+            String key;
+            if (msg instanceof Request) {
+                Request request = (Request) msg;
+                key = "client.compress." + request.getInterfaceName() + "." + request.getMethodName();
+            } else {
+                String method = msg instanceof DefaultResponse ? ((DefaultResponse) msg).getServiceMethod() : null;
+                key = "server.compress." + (method != null ? method : "unknown");
+            }
+            CompressionStats stats = STATS.get(key);
+            if (stats == null) {
+                CompressionStats created = new CompressionStats(key);
+                stats = STATS.putIfAbsent(key, created);
+                if (stats == null) {
+                    stats = created;
+                }
+            }
+            return stats;
+        }
+
+        void record(int rawBytes, int wireBytes, long elapsed) {
+            raw.inc(rawBytes);
+            wire.inc(wireBytes);
+            nanos.inc(elapsed);
+        }
+    }
 }
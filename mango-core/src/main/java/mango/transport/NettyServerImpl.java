@@ -2,26 +2,32 @@ package mango.transport;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.UnixChannelOption;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import mango.common.URL;
 import mango.common.URLParam;
 import mango.core.DefaultRequest;
 import mango.core.DefaultResponse;
+import mango.core.extension.ExtensionLoader;
+import mango.dispatcher.DispatchTask;
+import mango.dispatcher.Dispatcher;
+import mango.exception.RpcBizException;
+import mango.exception.RpcBusyException;
 import mango.exception.RpcFrameworkException;
+import mango.metrics.Counter;
+import mango.metrics.Metrics;
 import mango.rpc.MessageRouter;
 import mango.rpc.RpcContext;
 import mango.util.Constants;
+import mango.util.StringUtils;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Iterator;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -34,16 +40,26 @@ public class NettyServerImpl extends AbstractServer {
      * NioEventLoopGroup第一个通常称为“boss”，接受传入连接。 第二个通常称为“worker”，
      * 当“boss”接受连接并且向“worker”注册接受连接，则“worker”处理所接受连接的流量
      */
-    private EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-    private EventLoopGroup workerGroup = new NioEventLoopGroup();
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    // 传输层类型
+    private final NettyTransport transport;
+    // 监听socket数，每个socket由bossGroup中的一个线程负责accept
+    private final int acceptors;
     /**
      * 用于设置服务器的助手类
      */
     private ServerBootstrap serverBootstrap = new ServerBootstrap();
-    //业务处理线程池
-    private ThreadPoolExecutor pool;
+    // 请求派发
+    private Dispatcher dispatcher;
+    // 过载拒绝的请求数
+    private final Counter busyCounter = Metrics.counter("server.busy.rejected");
     // 消息处理路由
     private MessageRouter router;
+    // 开启压缩时在响应上记录服务方法，用于按方法统计压缩率
+    private final boolean compression;
+    // 流式调用等待消费端信用的最长时间
+    private final int streamIdleTimeout;
     // 是否初始化
     private volatile boolean initializing = false;
 
@@ -52,10 +68,22 @@ public class NettyServerImpl extends AbstractServer {
 
         this.localAddress = new InetSocketAddress(url.getPort());
         this.router = router;
-        this.pool = new ThreadPoolExecutor(url.getIntParameter(URLParam.minWorkerThread.getName(), URLParam.minWorkerThread.getIntValue()),
-                url.getIntParameter(URLParam.maxWorkerThread.getName(), URLParam.maxWorkerThread.getIntValue()),
-                120, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
-                new DefaultThreadFactory(String.format("%s-%s", Constants.FRAMEWORK_NAME, "biz")));
+        this.transport = NettyTransport.of(url);
+        int acceptors = Math.max(1, url.getIntParameter(URLParam.acceptors.getName(), URLParam.acceptors.getIntValue()));
+        if (acceptors > 1 && !transport.supportsReusePort()) {
+            logger.warn("transport {} does not support SO_REUSEPORT, use a single acceptor", transport.getName());
+            acceptors = 1;
+        }
+        this.acceptors = acceptors;
+        this.compression = StringUtils.isNotEmpty(url.getParameter(URLParam.compression.getName(), URLParam.compression.getValue()));
+        this.streamIdleTimeout = url.getIntParameter(URLParam.requestTimeout.getName(), URLParam.requestTimeout.getIntValue());
+        this.bossGroup = transport.newEventLoopGroup(acceptors,
+                new DefaultThreadFactory(String.format("%s-%s", Constants.FRAMEWORK_NAME, "boss")));
+        this.workerGroup = transport.newEventLoopGroup(0,
+                new DefaultThreadFactory(String.format("%s-%s", Constants.FRAMEWORK_NAME, "worker")));
+        this.dispatcher = ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension(
+                url.getParameter(URLParam.dispatcher.getName(), URLParam.dispatcher.getValue()));
+        this.dispatcher.init(url, router);
     }
 
     @Override
@@ -73,38 +101,66 @@ public class NettyServerImpl extends AbstractServer {
         // 最大响应包限制
         final int maxContentLength = url.getIntParameter(URLParam.maxContentLength.getName(),
                 URLParam.maxContentLength.getIntValue());
+        // 超过3个心跳间隔没有收到任何数据则关闭连接
+        final int heartbeat = url.getIntParameter(URLParam.heartbeat.getName(), URLParam.heartbeat.getIntValue());
+        final int codecVersion = url.getIntParameter(URLParam.codecVersion.getName(), URLParam.codecVersion.getIntValue());
+        final boolean writeBatch = WriteQueue.isEnabled(url);
 
+        transport.configure(this.serverBootstrap, url);
         this.serverBootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                .option(ChannelOption.SO_BACKLOG, 128)
+                .channel(transport.serverChannelClass())
+                .option(ChannelOption.SO_BACKLOG, url.getIntParameter(URLParam.backlog.getName(), URLParam.backlog.getIntValue()))
                 .childOption(ChannelOption.TCP_NODELAY, true)
                 .childOption(ChannelOption.SO_RCVBUF, url.getIntParameter(URLParam.bufferSize.getName(), URLParam.bufferSize.getIntValue()))
                 .childOption(ChannelOption.SO_SNDBUF, url.getIntParameter(URLParam.bufferSize.getName(), URLParam.bufferSize.getIntValue()))
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        url.getIntParameter(URLParam.writeBufferLowWaterMark.getName(), URLParam.writeBufferLowWaterMark.getIntValue()),
+                        url.getIntParameter(URLParam.writeBufferHighWaterMark.getName(), URLParam.writeBufferHighWaterMark.getIntValue())))
                 .handler(new LoggingHandler(LogLevel.INFO))
-                .childHandler(new ChannelInitializer<SocketChannel>() {
+                .childHandler(new ChannelInitializer<Channel>() {
                     @Override
-                    public void initChannel(SocketChannel ch) throws IOException {
+                    public void initChannel(Channel ch) throws IOException {
                         ch.pipeline().addLast(new NettyDecoder(codec, url, maxContentLength, Constants.HEADER_SIZE, 4),
-                                new NettyEncoder(codec, url),
-                                // Netty服务端消息处理器
-                                new NettyServerHandler());
+                                new NettyEncoder(codec, url), new HandshakeHandler(false, codecVersion));
+                        if (heartbeat > 0) {
+                            ch.pipeline().addLast(new IdleStateHandler(heartbeat * 3L, 0, 0, TimeUnit.MILLISECONDS),
+                                    new HeartbeatHandler(false));
+                        }
+                        if (writeBatch) {
+                            ch.attr(WriteQueue.KEY).set(new WriteQueue(ch, url, "server"));
+                        }
+                        // 流式调用的信用帧和可写事件
+                        ch.pipeline().addLast(new ServerStreamHandler());
+                        // Netty服务端消息处理器
+                        ch.pipeline().addLast(new NettyServerHandler());
+                        if (MemoryBudget.isEnabled()) {
+                            ch.pipeline().addFirst(MemoryBudgetHandler.INSTANCE);
+                        }
                     }
                 });
 
+        if (acceptors > 1) {
+            // 内核在多个监听socket之间分配新连接
+            this.serverBootstrap.option(UnixChannelOption.SO_REUSEPORT, true);
+        }
+
         try {
-            ChannelFuture channelFuture = this.serverBootstrap.bind(this.localAddress).sync();
+            // 每次bind会注册到bossGroup中的下一个线程
+            for (int i = 0; i < acceptors; i++) {
+                ChannelFuture channelFuture = this.serverBootstrap.bind(this.localAddress).sync();
 
-            channelFuture.addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture f) throws Exception {
+                channelFuture.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture f) throws Exception {
 
-                    if(f.isSuccess()){
-                        logger.info("Rpc Server bind port:{} success", url.getPort());
-                    } else {
-                        logger.error("Rpc Server bind port:{} failure", url.getPort());
+                        if(f.isSuccess()){
+                            logger.info("Rpc Server bind port:{} success, transport:{}", url.getPort(), transport.getName());
+                        } else {
+                            logger.error("Rpc Server bind port:{} failure", url.getPort());
+                        }
                     }
-                }
-            });
+                });
+            }
         } catch (InterruptedException e) {
             logger.error(String.format("NettyServer bind to address:%s failure", this.localAddress), e);
             throw new RpcFrameworkException(String.format("NettyClient connect to address:%s failure", this.localAddress), e);
@@ -144,7 +200,7 @@ public class NettyServerImpl extends AbstractServer {
         try {
             this.bossGroup.shutdownGracefully();
             this.workerGroup.shutdownGracefully();
-            this.pool.shutdown();
+            this.dispatcher.shutdown();
 
             state = ChannelState.CLOSED;
         } catch (Exception e) {
@@ -176,11 +232,17 @@ public class NettyServerImpl extends AbstractServer {
     /**处理客户端请求**/
     private void processRpcRequest(final ChannelHandlerContext context, final DefaultRequest request) {
         final long processStartTime = System.currentTimeMillis();
+        // 内存预算用完时不再处理新请求，避免继续产生待写出的响应
+        if (MemoryBudget.isExhausted()) {
+            MemoryBudget.rejected();
+            rejectRpcRequest(context, request, processStartTime);
+            return;
+        }
         try {
-            // 启动一个线程去处理该请求
-            this.pool.execute(new Runnable() {
+            // 由派发器决定在哪个线程处理该请求
+            this.dispatcher.dispatch(request, new DispatchTask() {
                 @Override
-                public void run() {
+                protected void process() {
                     try {
                         // 初始化RPC上下文
                         RpcContext.init(request);
@@ -191,27 +253,70 @@ public class NettyServerImpl extends AbstractServer {
                     }
 
                 }
+
+                @Override
+                public void reject() {
+                    rejectRpcRequest(context, request, processStartTime);
+                }
             });
         } catch (RejectedExecutionException e) {
-            // 构建一个异常的response
-            DefaultResponse response = new DefaultResponse();
-            response.setRequestId(request.getRequestId());
-            response.setException(new RpcFrameworkException("process thread pool is full, reject"));
-            response.setProcessTime(System.currentTimeMillis() - processStartTime);
-            context.channel().write(response);
+            // 队列已满
+            rejectRpcRequest(context, request, processStartTime);
         }
 
     }
+
+    /** 过载时返回BUSY响应，客户端可以立即重试其他提供者 **/
+    private void rejectRpcRequest(ChannelHandlerContext context, DefaultRequest request, long processStartTime) {
+        busyCounter.inc();
+        if (request.getType() == Constants.REQUEST_ONEWAY) {
+            return;
+        }
+        DefaultResponse response = new DefaultResponse();
+        response.setRequestId(request.getRequestId());
+        response.setException(new RpcBusyException("server busy, reject request id:" + request.getRequestId()));
+        response.setProcessTime(System.currentTimeMillis() - processStartTime);
+        writeResponse(context, response);
+    }
+    /** 写出响应，开启批量写时交给写队列合并flush **/
+    private void writeResponse(ChannelHandlerContext context, DefaultResponse response) {
+        WriteQueue writeQueue = context.channel().attr(WriteQueue.KEY).get();
+        if (writeQueue != null) {
+            writeQueue.write(response);
+        } else {
+            context.writeAndFlush(response);
+        }
+    }
+
     /** 处理rpc请求 **/
     private void processRpcRequest(ChannelHandlerContext context, DefaultRequest request, long processStartTime) {
         // 将request拿到消息路由中去处理，返回默认的response实体
         DefaultResponse response = (DefaultResponse) this.router.handle(request);
         // 设置整个请求的时间
         response.setProcessTime(System.currentTimeMillis() - processStartTime);
+        if (compression) {
+            response.setServiceMethod(request.getInterfaceName() + "." + request.getMethodName());
+        }
+        if (request.getType() == Constants.REQUEST_STREAM && response.getException() == null
+                && response.getResult() instanceof Iterator) {
+            Iterator<?> iterator = (Iterator<?>) response.getResult();
+            if (Handshake.getVersion(context.channel()) >= Constants.PROTOCOL_V2) {
+                new ServerStream(context.channel(), request, iterator, dispatcher, response.getServiceMethod(),
+                        streamIdleTimeout).start();
+                return;
+            }
+            // 对端不支持流式帧，一次性返回所有元素
+            try {
+                response.setResult(ServerStream.drain(iterator));
+            } catch (Exception e) {
+                response.setResult(null);
+                response.setException(new RpcBizException("invoke failure", e));
+            }
+        }
         //非单向调用
         if(request.getType()!=Constants.REQUEST_ONEWAY){
             // 将response写入到通道中
-            context.writeAndFlush(response);
+            writeResponse(context, response);
         }
         logger.info("Rpc server process request:{} end...", request.getRequestId());
     }
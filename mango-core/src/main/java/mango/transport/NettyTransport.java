@@ -0,0 +1,184 @@
+package mango.transport;
+
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.exception.RpcFrameworkException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Netty传输层类型: nio、epoll、io_uring，auto时按io_uring、epoll、nio的顺序选择可用的实现
+ * io_uring依赖netty-incubator-transport-io_uring，通过反射加载，不在classpath或内核不支持时回退
+ * @author Ricky Fung
+ */
+public enum NettyTransport {
+
+    NIO("nio"),
+    EPOLL("epoll"),
+    IO_URING("io_uring");
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyTransport.class);
+
+    private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
+    private final String name;
+
+    NettyTransport(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 根据url中的transport参数选择传输层，不可用时回退到nio
+     */
+    public static NettyTransport of(URL url) {
+        String type = url.getParameter(URLParam.transport.getName(), URLParam.transport.getValue());
+        if ("auto".equalsIgnoreCase(type)) {
+            if (IO_URING.isAvailable()) {
+                return IO_URING;
+            }
+            return EPOLL.isAvailable() ? EPOLL : NIO;
+        }
+        for (NettyTransport transport : values()) {
+            if (transport.name.equalsIgnoreCase(type)) {
+                if (transport.isAvailable()) {
+                    return transport;
+                }
+                logger.warn("transport {} is not available on this platform, fall back to nio", type);
+                return NIO;
+            }
+        }
+        throw new RpcFrameworkException("unknown transport: " + type);
+    }
+
+    public boolean isAvailable() {
+        switch (this) {
+            case EPOLL:
+                return Epoll.isAvailable();
+            case IO_URING:
+                try {
+                    Class<?> clz = Class.forName(IO_URING_PACKAGE + "IOUring");
+                    return (Boolean) clz.getMethod("isAvailable").invoke(null);
+                } catch (Throwable e) {
+                    return false;
+                }
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 是否支持SO_REUSEPORT，多个socket监听同一端口
+     */
+    public boolean supportsReusePort() {
+        return this != NIO;
+    }
+
+    public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        switch (this) {
+            case EPOLL:
+                return new EpollEventLoopGroup(threads, threadFactory);
+            case IO_URING:
+                try {
+                    return (EventLoopGroup) Class.forName(IO_URING_PACKAGE + "IOUringEventLoopGroup")
+                            .getConstructor(int.class, ThreadFactory.class).newInstance(threads, threadFactory);
+                } catch (Exception e) {
+                    throw new RpcFrameworkException("create io_uring event loop group failure", e);
+                }
+            default:
+                return new NioEventLoopGroup(threads, threadFactory);
+        }
+    }
+
+    public Class<? extends Channel> socketChannelClass() {
+        switch (this) {
+            case EPOLL:
+                return EpollSocketChannel.class;
+            case IO_URING:
+                return loadClass("IOUringSocketChannel");
+            default:
+                return NioSocketChannel.class;
+        }
+    }
+
+    public Class<? extends ServerChannel> serverChannelClass() {
+        switch (this) {
+            case EPOLL:
+                return EpollServerSocketChannel.class;
+            case IO_URING:
+                return loadClass("IOUringServerSocketChannel");
+            default:
+                return NioServerSocketChannel.class;
+        }
+    }
+
+    /**
+     * 设置epoll相关参数：epollMode(edge/level)、tcpQuickAck、busyPoll(微秒)
+     */
+    public void configure(AbstractBootstrap<?, ?> bootstrap, URL url) {
+        if (this != EPOLL) {
+            return;
+        }
+        String mode = url.getParameter(URLParam.epollMode.getName(), URLParam.epollMode.getValue());
+        EpollMode epollMode = "level".equalsIgnoreCase(mode) ? EpollMode.LEVEL_TRIGGERED : EpollMode.EDGE_TRIGGERED;
+        boolean quickAck = url.getBooleanParameter(URLParam.tcpQuickAck.getName(), URLParam.tcpQuickAck.isBoolValue());
+        int busyPoll = url.getIntParameter(URLParam.busyPoll.getName(), URLParam.busyPoll.getIntValue());
+        ChannelOption<Integer> busyPollOption = busyPoll > 0 ? busyPollOption() : null;
+
+        if (bootstrap instanceof ServerBootstrap) {
+            ServerBootstrap b = (ServerBootstrap) bootstrap;
+            b.option(EpollChannelOption.EPOLL_MODE, epollMode);
+            b.childOption(EpollChannelOption.EPOLL_MODE, epollMode);
+            b.childOption(EpollChannelOption.TCP_QUICKACK, quickAck);
+            if (busyPollOption != null) {
+                b.childOption(busyPollOption, busyPoll);
+            }
+        } else {
+            bootstrap.option(EpollChannelOption.EPOLL_MODE, epollMode);
+            bootstrap.option(EpollChannelOption.TCP_QUICKACK, quickAck);
+            if (busyPollOption != null) {
+                bootstrap.option(busyPollOption, busyPoll);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChannelOption<Integer> busyPollOption() {
+        // SO_BUSY_POLL在较新版本的netty中才提供
+        try {
+            return (ChannelOption<Integer>) EpollChannelOption.class.getField("SO_BUSY_POLL").get(null);
+        } catch (Exception e) {
+            logger.warn("SO_BUSY_POLL is not supported by this netty version, ignore busyPoll");
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> loadClass(String simpleName) {
+        try {
+            return (Class<T>) Class.forName(IO_URING_PACKAGE + simpleName);
+        } catch (ClassNotFoundException e) {
+            throw new RpcFrameworkException("io_uring transport class not found: " + simpleName, e);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package mango.transport;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
+import mango.core.DefaultResponse;
+import mango.dispatcher.DispatchTask;
+import mango.dispatcher.Dispatcher;
+import mango.exception.RpcBizException;
+import mango.exception.RpcBusyException;
+import mango.exception.RpcTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务端流式响应，把服务方法返回的Iterator逐个元素发给消费端
+ * 只在有信用且连接可写时取下一个元素；信用用完或写缓冲区满时停下，不占用工作线程，
+ * 收到信用帧或连接恢复可写后重新交给派发器继续发送。最后发送一个不带流式标记的响应表示结束。
+ * 信用用完后超过idleTimeout没有收到新的信用，认为消费端已放弃该流，返回超时并结束
+ * @author Ricky Fung
+ */
+class ServerStream {
+    private static final Logger logger = LoggerFactory.getLogger(ServerStream.class);
+
+    static final AttributeKey<ConcurrentMap<Long, ServerStream>> STREAMS = AttributeKey.valueOf("mango.serverStreams");
+
+    // 每发送这么多元素flush一次
+    private static final int FLUSH_BATCH = 16;
+
+    private final Channel channel;
+    private final DefaultRequest request;
+    private final Iterator<?> iterator;
+    private final Dispatcher dispatcher;
+    private final String serviceMethod;
+    private final AtomicLong credits;
+    private final long idleTimeoutNanos;
+    // 信用用完的时间，0表示未停顿
+    private volatile long stalledSince;
+    // 是否已提交空闲检查
+    private final AtomicBoolean idleCheck = new AtomicBoolean();
+    // 是否有线程正在发送或已提交发送任务
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private volatile boolean cancelled;
+    private boolean finished;
+
+    /**
+     * @param idleTimeout 等待信用的最长时间(ms)，0表示一直等待
+     */
+    ServerStream(Channel channel, DefaultRequest request, Iterator<?> iterator, Dispatcher dispatcher,
+                 String serviceMethod, int idleTimeout) {
+        this.channel = channel;
+        this.request = request;
+        this.iterator = iterator;
+        this.dispatcher = dispatcher;
+        this.serviceMethod = serviceMethod;
+        String window = request.getAttachment(URLParam.streamWindow.getName());
+        this.credits = new AtomicLong(window != null && window.length() > 0 ? Integer.parseInt(window)
+                : URLParam.streamWindow.getIntValue());
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, idleTimeout));
+    }
+
+    /**
+     * 在处理请求的工作线程中直接开始发送
+     */
+    void start() {
+        ConcurrentMap<Long, ServerStream> streams = channel.attr(STREAMS).get();
+        if (streams == null) {
+            ConcurrentMap<Long, ServerStream> created = new ConcurrentHashMap<>();
+            streams = channel.attr(STREAMS).setIfAbsent(created);
+            if (streams == null) {
+                streams = created;
+            }
+        }
+        streams.put(request.getRequestId(), this);
+        scheduled.set(1);
+        send();
+    }
+
+    static ServerStream get(Channel channel, long requestId) {
+        ConcurrentMap<Long, ServerStream> streams = channel.attr(STREAMS).get();
+        return streams != null ? streams.get(requestId) : null;
+    }
+
+    static void resumeAll(Channel channel) {
+        ConcurrentMap<Long, ServerStream> streams = channel.attr(STREAMS).get();
+        if (streams != null) {
+            for (ServerStream stream : streams.values()) {
+                stream.resume();
+            }
+        }
+    }
+
+    static void cancelAll(Channel channel) {
+        ConcurrentMap<Long, ServerStream> streams = channel.attr(STREAMS).get();
+        if (streams != null) {
+            for (ServerStream stream : streams.values()) {
+                stream.cancel();
+            }
+        }
+    }
+
+    /**
+     * 对端不支持流式帧时一次性取出所有元素
+     */
+    static List<Object> drain(Iterator<?> iterator) {
+        List<Object> elements = new ArrayList<>();
+        while (iterator.hasNext()) {
+            elements.add(iterator.next());
+        }
+        close(iterator);
+        return elements;
+    }
+
+    void addCredits(int n) {
+        credits.addAndGet(n);
+        stalledSince = 0;
+        resume();
+    }
+
+    void cancel() {
+        cancelled = true;
+        remove();
+        // 没有线程在发送时由当前线程关闭，否则由发送线程退出时关闭
+        if (scheduled.compareAndSet(0, 1)) {
+            finish();
+        }
+    }
+
+    private void resume() {
+        if (!cancelled && credits.get() > 0 && channel.isWritable() && scheduled.compareAndSet(0, 1)) {
+            try {
+                dispatcher.dispatch(request, new DispatchTask() {
+                    @Override
+                    protected void process() {
+                        send();
+                    }
+
+                    @Override
+                    public void reject() {
+                        complete(new RpcBusyException("server busy, stream interrupted, request id:" + request.getRequestId()));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                complete(new RpcBusyException("server busy, stream interrupted, request id:" + request.getRequestId()));
+            }
+        }
+    }
+
+    /**
+     * 持有发送权的线程发送元素，直到信用用完、连接不可写或结束
+     */
+    private void send() {
+        for (;;) {
+            int sent = 0;
+            try {
+                while (!cancelled && credits.get() > 0 && channel.isWritable()) {
+                    if (!iterator.hasNext()) {
+                        complete(null);
+                        return;
+                    }
+                    channel.write(StreamFrame.data(newResponse(iterator.next())));
+                    credits.decrementAndGet();
+                    if (++sent % FLUSH_BATCH == 0) {
+                        channel.flush();
+                    }
+                }
+                if (sent > 0) {
+                    channel.flush();
+                }
+            } catch (Exception e) {
+                logger.error("stream failure, request id:" + request.getRequestId(), e);
+                complete(new RpcBizException("stream failure", e));
+                return;
+            }
+            scheduled.set(0);
+            // 释放后再检查，期间到达的信用或可写事件可能因为发送权被占用而没有提交任务
+            if (cancelled) {
+                if (scheduled.compareAndSet(0, 1)) {
+                    finish();
+                }
+                return;
+            }
+            if (credits.get() <= 0) {
+                stalled();
+                return;
+            }
+            if (!channel.isWritable() || !scheduled.compareAndSet(0, 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 信用用完，开始计算等待时间
+     */
+    private void stalled() {
+        if (idleTimeoutNanos <= 0 || stalledSince != 0) {
+            return;
+        }
+        stalledSince = System.nanoTime();
+        // 与addCredits并发时以信用为准
+        if (credits.get() > 0) {
+            stalledSince = 0;
+            return;
+        }
+        if (idleCheck.compareAndSet(false, true)) {
+            scheduleIdleCheck(idleTimeoutNanos);
+        }
+    }
+
+    private void scheduleIdleCheck(long delayNanos) {
+        try {
+            channel.eventLoop().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    checkIdle();
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // IO线程已关闭，连接断开时会取消所有流
+            idleCheck.set(false);
+        }
+    }
+
+    private void checkIdle() {
+        // 先释放再检查，与stalled中先记录时间再提交检查的顺序相反，不会错过新的停顿
+        idleCheck.set(false);
+        long since = stalledSince;
+        if (since == 0 || get(channel, request.getRequestId()) != this) {
+            return;
+        }
+        long idle = System.nanoTime() - since;
+        if (idle < idleTimeoutNanos) {
+            if (idleCheck.compareAndSet(false, true)) {
+                scheduleIdleCheck(idleTimeoutNanos - idle);
+            }
+            return;
+        }
+        // 没有线程在发送时才能结束，否则说明信用已经到达
+        if (credits.get() <= 0 && scheduled.compareAndSet(0, 1)) {
+            logger.warn("stream idle without credit for {}ms, request id:{}",
+                    TimeUnit.NANOSECONDS.toMillis(idle), request.getRequestId());
+            complete(new RpcTimeoutException(String.format("stream idle without credit, request id:%d, timeout:%dms",
+                    request.getRequestId(), TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos))));
+        }
+    }
+
+    /**
+     * 发送结束响应，调用时当前线程持有发送权
+     */
+    private void complete(Exception e) {
+        if (!cancelled) {
+            DefaultResponse response = new DefaultResponse();
+            response.setRequestId(request.getRequestId());
+            response.setException(e);
+            channel.writeAndFlush(response);
+        }
+        remove();
+        finish();
+    }
+
+    private void finish() {
+        if (!finished) {
+            finished = true;
+            close(iterator);
+        }
+    }
+
+    private void remove() {
+        ConcurrentMap<Long, ServerStream> streams = channel.attr(STREAMS).get();
+        if (streams != null) {
+            streams.remove(request.getRequestId(), this);
+        }
+    }
+
+    private DefaultResponse newResponse(Object element) {
+        DefaultResponse response = new DefaultResponse();
+        response.setRequestId(request.getRequestId());
+        response.setResult(element);
+        response.setServiceMethod(serviceMethod);
+        return response;
+    }
+
+    private static void close(Iterator<?> iterator) {
+        if (iterator instanceof Closeable) {
+            try {
+                ((Closeable) iterator).close();
+            } catch (Exception e) {
+                logger.warn("close stream iterator error", e);
+            }
+        }
+    }
+}
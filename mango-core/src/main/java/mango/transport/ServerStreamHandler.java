@@ -0,0 +1,43 @@
+package mango.transport;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * 服务端流式调用的流控处理器：处理信用帧，连接恢复可写时继续发送，连接断开时取消所有流
+ * @author Ricky Fung
+ */
+public class ServerStreamHandler extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof StreamFrame)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        StreamFrame frame = (StreamFrame) msg;
+        ServerStream stream = ServerStream.get(ctx.channel(), frame.getRequestId());
+        if (stream == null) {
+            return;
+        }
+        if (frame.getCredits() > 0) {
+            stream.addCredits(frame.getCredits());
+        } else {
+            stream.cancel();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            ServerStream.resumeAll(ctx.channel());
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        ServerStream.cancelAll(ctx.channel());
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,50 @@
+package mango.transport;
+
+import mango.core.Response;
+
+/**
+ * 流式调用中的帧，只在v2协议中使用
+ * 数据帧：服务端发出的一个元素，包装在响应中
+ * 信用帧：消费端允许服务端继续发送的元素数，0表示取消
+ * @author Ricky Fung
+ */
+public class StreamFrame {
+
+    private final long requestId;
+    private final Response response;
+    private final int credits;
+
+    private StreamFrame(long requestId, Response response, int credits) {
+        this.requestId = requestId;
+        this.response = response;
+        this.credits = credits;
+    }
+
+    public static StreamFrame data(Response response) {
+        return new StreamFrame(response.getRequestId(), response, 0);
+    }
+
+    public static StreamFrame credit(long requestId, int credits) {
+        return new StreamFrame(requestId, null, credits);
+    }
+
+    public static StreamFrame cancel(long requestId) {
+        return new StreamFrame(requestId, null, 0);
+    }
+
+    public boolean isCredit() {
+        return response == null;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public Response getResponse() {
+        return response;
+    }
+
+    public int getCredits() {
+        return credits;
+    }
+}
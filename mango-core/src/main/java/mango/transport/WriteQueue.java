@@ -0,0 +1,124 @@
+package mango.transport;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.metrics.Counter;
+import mango.metrics.Metrics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 批量写队列
+ * 业务线程只把消息放入队列，由IO线程统一写出，每批最多writeBatchSize条消息后flush一次，
+ * 队列中剩余的消息在下一个任务中继续处理；writeBatchDelay大于0时延迟该微秒数再写，以积攒更多消息
+ * @author Ricky Fung
+ */
+public class WriteQueue {
+    /**
+     * 服务端通过channel找到对应的写队列
+     */
+    public static final AttributeKey<WriteQueue> KEY = AttributeKey.valueOf("mango.writeQueue");
+
+    private final Channel channel;
+    private final int maxBatch;
+    private final long delayMicros;
+
+    private final Queue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    // 是否已提交写任务
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    // 所有连接共享的计数器，messages/flushes即平均每次flush写出的消息数
+    private final Counter messageCounter;
+    private final Counter flushCounter;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * @param side 指标前缀，client或server
+     */
+    public WriteQueue(Channel channel, URL url, String side) {
+        this.channel = channel;
+        this.maxBatch = Math.max(1, url.getIntParameter(URLParam.writeBatchSize.getName(), URLParam.writeBatchSize.getIntValue()));
+        this.delayMicros = url.getIntParameter(URLParam.writeBatchDelay.getName(), URLParam.writeBatchDelay.getIntValue());
+        this.messageCounter = Metrics.counter(side + ".write.messages");
+        this.flushCounter = Metrics.counter(side + ".write.flushes");
+    }
+
+    public static boolean isEnabled(URL url) {
+        return url.getBooleanParameter(URLParam.writeBatch.getName(), URLParam.writeBatch.isBoolValue());
+    }
+
+    /**
+     * 可在任意线程调用，返回的future在消息写出后完成
+     */
+    public ChannelFuture write(Object msg) {
+        ChannelPromise promise = channel.newPromise();
+        queue.offer(new PendingWrite(msg, promise));
+        schedule(delayMicros);
+        return promise;
+    }
+
+    private void schedule(long delay) {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (delay > 0) {
+                channel.eventLoop().schedule(drainTask, delay, TimeUnit.MICROSECONDS);
+            } else {
+                channel.eventLoop().execute(drainTask);
+            }
+        } catch (RejectedExecutionException e) {
+            // IO线程已关闭
+            scheduled.set(false);
+            PendingWrite write;
+            while ((write = queue.poll()) != null) {
+                write.promise.tryFailure(e);
+            }
+        }
+    }
+
+    private void drain() {
+        int written = 0;
+        try {
+            PendingWrite write;
+            while (written < maxBatch && (write = queue.poll()) != null) {
+                channel.write(write.msg, write.promise);
+                written++;
+            }
+        } finally {
+            if (written > 0) {
+                channel.flush();
+                messageCounter.inc(written);
+                flushCounter.inc();
+            }
+            scheduled.set(false);
+            // 剩余的消息交给下一个任务，让IO线程有机会处理其他事件
+            if (!queue.isEmpty()) {
+                schedule(0);
+            }
+        }
+    }
+
+    private static final class PendingWrite {
+        final Object msg;
+        final ChannelPromise promise;
+
+        PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package mango.transport.pool;
+
+import mango.transport.ChannelSelector;
+import mango.transport.ChannelWrapper;
+
+import java.util.List;
+
+/**
+ * 选择等待响应请求最少的连接
+ * @author Ricky Fung
+ */
+public class LeastPendingChannelSelector implements ChannelSelector {
+
+    @Override
+    public ChannelWrapper select(List<ChannelWrapper> channels) {
+        ChannelWrapper selected = null;
+        int least = Integer.MAX_VALUE;
+        for (ChannelWrapper channel : channels) {
+            if (!channel.isAvailable()) {
+                continue;
+            }
+            int pending = channel.pendingCount();
+            if (pending < least) {
+                least = pending;
+                selected = channel;
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,34 @@
+package mango.transport.pool;
+
+import mango.transport.ChannelSelector;
+import mango.transport.ChannelWrapper;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轮询选择连接
+ * @author Ricky Fung
+ */
+public class RoundRobinChannelSelector implements ChannelSelector {
+    private final AtomicInteger index = new AtomicInteger(0);
+
+    @Override
+    public ChannelWrapper select(List<ChannelWrapper> channels) {
+        // 连接可能被并发移除，在快照上选择
+        ChannelWrapper[] snapshot = channels.toArray(new ChannelWrapper[0]);
+        int size = snapshot.length;
+        if (size == 0) {
+            return null;
+        }
+        int start = index.getAndIncrement() & Integer.MAX_VALUE;
+        // 跳过不可用的连接
+        for (int i = 0; i < size; i++) {
+            ChannelWrapper channel = snapshot[(start + i) % size];
+            if (channel.isAvailable()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+}
@@ -22,11 +22,36 @@ public class Constants {
     public static final byte FLAG_REQUEST = 0x01;
     public static final byte FLAG_RESPONSE = 0x03;
     public static final byte FLAG_OTHER = (byte) 0xFF;
+    // 心跳帧没有消息体，requestId字段携带发送时间
+    public static final byte FLAG_HEARTBEAT_REQUEST = 0x05;
+    public static final byte FLAG_HEARTBEAT_RESPONSE = 0x07;
+    // 服务端过载拒绝，没有消息体；只用于解码，编码时v1按普通响应携带RpcBusyException
+    public static final byte FLAG_RESPONSE_BUSY = 0x09;
+    // 连接建立时协商协议版本，requestId字段携带版本号，没有消息体
+    public static final byte FLAG_HANDSHAKE = 0x0B;
+
+    public static final byte PROTOCOL_V1 = 1;
+    // v2帧头第3个字节是版本号，v1在该位置是消息类型，两者取值不重叠
+    public static final byte PROTOCOL_V2 = 2;
+    // v2固定部分 magic+version+flags+serializer+status = 2+1+1+1+1，之后是varint的requestId和消息体长度
+    public static final int V2_FIXED_HEADER_SIZE = 6;
+    // v2帧头flags
+    public static final byte V2_FLAG_RESPONSE = 0x01;
+    public static final byte V2_FLAG_ONEWAY = 0x02;
+    public static final byte V2_FLAG_COMPRESSED = 0x04;
+    public static final byte V2_FLAG_HEARTBEAT = 0x08;
+    public static final byte V2_FLAG_STREAMING = 0x10;
+    // v2响应状态码
+    public static final byte V2_STATUS_OK = 0;
+    public static final byte V2_STATUS_BUSY = 1;
+    public static final byte V2_STATUS_ERROR = 2;
 
     //单向调用
     public static final byte REQUEST_ONEWAY = 0x03;
     public static final byte REQUEST_SYNC = 0x05;
     public static final byte REQUEST_ASYNC = 0x07;
+    //服务端流式返回，需要v2协议
+    public static final byte REQUEST_STREAM = 0x09;
 
     public static final int DEFAULT_PORT = 21918;
 
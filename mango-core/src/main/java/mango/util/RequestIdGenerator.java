@@ -4,14 +4,34 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 生成requestId工具类
+ * 每个线程从全局序列中一次领取一段id，段内自增，减少多线程在同一个AtomicLong上的竞争
  *
  * @author Ricky Fung
  */
 public class RequestIdGenerator {
+    // 每次领取的id段大小
+    private static final int BLOCK_SIZE = 1024;
     // 使用AtomicLong防止多线程id重复
     private static final AtomicLong idGenerator = new AtomicLong(1);
 
+    private static final ThreadLocal<IdBlock> localBlock = new ThreadLocal<IdBlock>() {
+        @Override
+        protected IdBlock initialValue() {
+            return new IdBlock();
+        }
+    };
+
     public static long getRequestId() {
-        return idGenerator.getAndIncrement();
+        IdBlock block = localBlock.get();
+        if (block.next == block.end) {
+            block.next = idGenerator.getAndAdd(BLOCK_SIZE);
+            block.end = block.next + BLOCK_SIZE;
+        }
+        return block.next++;
+    }
+
+    private static final class IdBlock {
+        long next;
+        long end;
     }
 }
@@ -0,0 +1,122 @@
+package mango.util;
+
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 以long为key的分段并发Map
+ * 每个分段是一个开放寻址的LongObjectHashMap，key不装箱，put/remove不分配节点；
+ * 按key的哈希选择分段并加锁，临界区内只有数组读写；
+ * 分段锁使用ReentrantLock而不是synchronized，虚拟线程竞争时会挂起而不是pin住载体线程
+ * @author Ricky Fung
+ */
+public class StripedLongMap<V> {
+
+    private final LongObjectHashMap<V>[] stripes;
+    private final ReentrantLock[] locks;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public StripedLongMap() {
+        this(16, 16);
+    }
+
+    /**
+     * @param stripeCount 分段数，向上取整为2的幂
+     * @param initialCapacity 每个分段的初始容量
+     */
+    @SuppressWarnings("unchecked")
+    public StripedLongMap(int stripeCount, int initialCapacity) {
+        int n = 1;
+        while (n < stripeCount) {
+            n <<= 1;
+        }
+        this.stripes = (LongObjectHashMap<V>[]) new LongObjectHashMap<?>[n];
+        this.locks = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new LongObjectHashMap<>(initialCapacity);
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = n - 1;
+    }
+
+    public V put(long key, V value) {
+        int index = indexFor(key);
+        V old;
+        locks[index].lock();
+        try {
+            old = stripes[index].put(key, value);
+        } finally {
+            locks[index].unlock();
+        }
+        if (old == null) {
+            size.incrementAndGet();
+        }
+        return old;
+    }
+
+    public V get(long key) {
+        int index = indexFor(key);
+        locks[index].lock();
+        try {
+            return stripes[index].get(key);
+        } finally {
+            locks[index].unlock();
+        }
+    }
+
+    public V remove(long key) {
+        int index = indexFor(key);
+        V old;
+        locks[index].lock();
+        try {
+            old = stripes[index].remove(key);
+        } finally {
+            locks[index].unlock();
+        }
+        if (old != null) {
+            size.decrementAndGet();
+        }
+        return old;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * 取出并清空所有元素
+     */
+    public List<V> drain() {
+        List<V> values = new ArrayList<>(size());
+        for (int i = 0; i < stripes.length; i++) {
+            LongObjectHashMap<V> stripe = stripes[i];
+            locks[i].lock();
+            try {
+                if (stripe.isEmpty()) {
+                    continue;
+                }
+                values.addAll(stripe.values());
+                size.addAndGet(-stripe.size());
+                stripe.clear();
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return values;
+    }
+
+    private int indexFor(long key) {
+        // 连续的id分散到不同分段
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
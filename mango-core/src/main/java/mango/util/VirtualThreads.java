@@ -0,0 +1,70 @@
+package mango.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * JDK 21+ 虚拟线程工具类
+ * 框架按低版本JDK编译，通过反射使用虚拟线程API，低版本JDK上isSupported()返回false
+ * 排查虚拟线程pin住载体线程需在JVM启动参数中加-Djdk.tracePinnedThreads=short，运行时设置无效
+ * @author Ricky Fung
+ */
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null, name = null, factory = null, newExecutor = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // JDK 19/20上是预览特性，未开启时调用会抛出异常
+            ofVirtual.invoke(null);
+        } catch (Exception e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newExecutor;
+    }
+
+    private VirtualThreads() {}
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 创建虚拟线程工厂，线程名为 prefix + 序号
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_NAME.invoke(builder, prefix, 0L);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("virtual threads are not supported", e);
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, newThreadFactory(prefix));
+        } catch (UnsupportedOperationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("virtual threads are not supported", e);
+        }
+    }
+}
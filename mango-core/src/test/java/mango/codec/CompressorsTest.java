@@ -0,0 +1,52 @@
+package mango.codec;
+
+import mango.compress.deflate.DeflateCompressor;
+import mango.exception.RpcFrameworkException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ricky Fung
+ */
+public class CompressorsTest {
+
+    @Test
+    public void testIds() {
+        // id写在消息体中，不能改变
+        assertEquals(1, Compressors.getId("deflate"));
+        assertEquals(2, Compressors.getId("lz4"));
+        assertEquals(3, Compressors.getId("snappy"));
+        assertEquals(4, Compressors.getId("zstd"));
+        for (byte id = 1; id <= 4; id++) {
+            assertEquals(id, Compressors.getId(Compressors.getName(id)));
+        }
+    }
+
+    @Test
+    public void testUnknown() {
+        try {
+            Compressors.getId("gzip");
+            fail();
+        } catch (RpcFrameworkException expected) {
+        }
+        byte[] ids = {0, 5, -1};
+        for (byte id : ids) {
+            try {
+                Compressors.getName(id);
+                fail();
+            } catch (RpcFrameworkException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testGetCompressor() {
+        Compressor compressor = Compressors.getCompressor(Compressors.getId("deflate"));
+        assertTrue(compressor instanceof DeflateCompressor);
+        assertSame(compressor, Compressors.getCompressor(Compressors.getId("deflate")));
+    }
+}
@@ -0,0 +1,71 @@
+package mango.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mango.exception.RpcFrameworkException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ricky Fung
+ */
+public class VarIntsTest {
+
+    private static final long[] VALUES = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 0xFFFFFFFFL,
+            Long.MAX_VALUE, -1, Long.MIN_VALUE};
+
+    @Test
+    public void testMinimalRoundTrip() {
+        for (long value : VALUES) {
+            ByteBuf buf = Unpooled.buffer();
+            VarInts.write(buf, value);
+            assertEquals(VarInts.size(value), buf.readableBytes());
+            assertEquals(buf.readableBytes(), VarInts.readableSize(buf, VarInts.MAX_VARLONG_SIZE));
+            assertEquals(value, VarInts.read(buf));
+            assertEquals(0, buf.readableBytes());
+        }
+    }
+
+    @Test
+    public void testSizes() {
+        assertEquals(1, VarInts.size(0));
+        assertEquals(1, VarInts.size(127));
+        assertEquals(2, VarInts.size(128));
+        assertEquals(VarInts.MAX_VARINT_SIZE, VarInts.size(Integer.MAX_VALUE));
+        // 负数按无符号处理，心跳id为负数时占满10字节
+        assertEquals(VarInts.MAX_VARLONG_SIZE, VarInts.size(-1));
+        assertEquals(VarInts.MAX_VARLONG_SIZE, VarInts.size(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testPaddedRoundTrip() {
+        int[] values = {0, 1, 127, 128, 65535, Integer.MAX_VALUE};
+        for (int value : values) {
+            for (int width = VarInts.size(value); width <= VarInts.MAX_VARINT_SIZE; width++) {
+                ByteBuf buf = Unpooled.buffer();
+                VarInts.write(buf, value, width);
+                assertEquals(width, buf.readableBytes());
+                assertEquals(width, VarInts.readableSize(buf, VarInts.MAX_VARINT_SIZE));
+                assertEquals(value, VarInts.read(buf));
+            }
+        }
+    }
+
+    @Test
+    public void testIncomplete() {
+        ByteBuf buf = Unpooled.buffer();
+        VarInts.write(buf, -1L);
+        ByteBuf partial = buf.slice(0, VarInts.MAX_VARLONG_SIZE - 1);
+        assertEquals(0, VarInts.readableSize(partial, VarInts.MAX_VARLONG_SIZE));
+        assertEquals(0, VarInts.readableSize(Unpooled.EMPTY_BUFFER, VarInts.MAX_VARINT_SIZE));
+    }
+
+    @Test(expected = RpcFrameworkException.class)
+    public void testMalformed() {
+        ByteBuf buf = Unpooled.buffer();
+        // 超过int长度仍有延续位
+        VarInts.write(buf, 1L << 40);
+        VarInts.readableSize(buf, VarInts.MAX_VARINT_SIZE);
+    }
+}
@@ -0,0 +1,62 @@
+package mango.compress.deflate;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class DeflateCompressorTest {
+
+    private final DeflateCompressor compressor = new DeflateCompressor();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = new byte[64 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 17);
+        }
+        byte[] compressed = compressor.compress(data, 0, data.length);
+        assertTrue(compressed.length < data.length / 10);
+        assertArrayEquals(data, compressor.decompress(compressed, 0, compressed.length, data.length));
+    }
+
+    @Test
+    public void testOffset() throws IOException {
+        byte[] data = new byte[4096];
+        new Random(1).nextBytes(data);
+        byte[] compressed = compressor.compress(data, 100, 1000);
+        // 压缩数据前后有其他内容
+        byte[] wrapped = new byte[compressed.length + 20];
+        System.arraycopy(compressed, 0, wrapped, 10, compressed.length);
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 1100),
+                compressor.decompress(wrapped, 10, compressed.length, 1000));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        byte[] compressed = compressor.compress(new byte[0], 0, 0);
+        assertArrayEquals(new byte[0], compressor.decompress(compressed, 0, compressed.length, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        byte[] data = new byte[8192];
+        new Random(2).nextBytes(data);
+        byte[] compressed = compressor.compress(data, 0, data.length);
+        compressor.decompress(compressed, 0, compressed.length / 2, data.length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongLength() throws IOException {
+        byte[] data = new byte[1024];
+        byte[] compressed = compressor.compress(data, 0, data.length);
+        compressor.decompress(compressed, 0, compressed.length, data.length + 1);
+    }
+}
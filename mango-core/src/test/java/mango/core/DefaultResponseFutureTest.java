@@ -0,0 +1,161 @@
+package mango.core;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import mango.exception.RpcFrameworkException;
+import mango.exception.RpcTimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ricky Fung
+ */
+public class DefaultResponseFutureTest {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test(timeout = 5000)
+    public void testWheelTimeout() throws Exception {
+        final DefaultResponseFuture<String> future = new DefaultResponseFuture<>(50);
+        future.setTimeoutTask(timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                future.setFailure(new RpcTimeoutException("request timeout"));
+            }
+        }, 50, TimeUnit.MILLISECONDS));
+
+        try {
+            future.get();
+            fail("should timeout");
+        } catch (RpcTimeoutException e) {
+            assertTrue(future.isDone());
+            assertFalse(future.isSuccess());
+        }
+        // 超时之后到达的响应被忽略
+        future.setResult("late");
+        assertFalse(future.isSuccess());
+    }
+
+    @Test
+    public void testCompletionCancelsTimeout() throws Exception {
+        DefaultResponseFuture<String> future = new DefaultResponseFuture<>(60000);
+        Timeout timeout = timer.newTimeout(new FailTask(future), 60000, TimeUnit.MILLISECONDS);
+        future.setTimeoutTask(timeout);
+
+        future.setResult("ok");
+        assertEquals("ok", future.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    public void testTimeoutTaskSetAfterCompletion() throws Exception {
+        // 响应先于超时任务登记到达时，登记的任务立即取消
+        DefaultResponseFuture<String> future = new DefaultResponseFuture<>(60000);
+        future.setResult("ok");
+        Timeout timeout = timer.newTimeout(new FailTask(future), 60000, TimeUnit.MILLISECONDS);
+        future.setTimeoutTask(timeout);
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test(timeout = 10000)
+    public void testCompletionRace() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            final DefaultResponseFuture<String> future = new DefaultResponseFuture<>(1000);
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger results = new AtomicInteger();
+            final AtomicInteger failures = new AtomicInteger();
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                final boolean success = t % 2 == 0;
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            if (success) {
+                                future.setResult("ok");
+                            } else {
+                                future.setFailure(new RpcTimeoutException("request timeout"));
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            // 等待方和完成方并发，等待方不能错过唤醒
+            Thread waiter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        future.get();
+                        results.incrementAndGet();
+                    } catch (RpcTimeoutException e) {
+                        failures.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            waiter.start();
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            waiter.join();
+
+            assertTrue(future.isDone());
+            assertEquals(1, results.get() + failures.get());
+            // 只有第一个完成的结果生效
+            assertEquals(future.isSuccess(), results.get() == 1);
+        }
+    }
+
+    @Test
+    public void testFailureWrapped() throws Exception {
+        DefaultResponseFuture<String> future = new DefaultResponseFuture<>(1000);
+        future.setFailure(new IllegalStateException("closed"));
+        try {
+            future.get();
+            fail("should fail");
+        } catch (RpcFrameworkException e) {
+            assertFalse(future.isSuccess());
+        }
+    }
+
+    private static class FailTask implements TimerTask {
+        private final DefaultResponseFuture<String> future;
+
+        FailTask(DefaultResponseFuture<String> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            future.setFailure(new RpcTimeoutException("request timeout"));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package mango.dispatcher;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Ricky Fung
+ */
+public class AdaptiveLifoQueueTest {
+
+    @Test
+    public void testFifoBelowThreshold() throws InterruptedException {
+        AdaptiveLifoQueue queue = new AdaptiveLifoQueue(10, 3);
+        Runnable[] tasks = offer(queue, 3);
+        assertEquals(tasks[0], queue.take());
+        assertEquals(tasks[1], queue.poll());
+        assertEquals(tasks[2], queue.poll(10, TimeUnit.MILLISECONDS));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testLifoAboveThreshold() throws InterruptedException {
+        AdaptiveLifoQueue queue = new AdaptiveLifoQueue(10, 3);
+        Runnable[] tasks = offer(queue, 6);
+        assertEquals(tasks[5], queue.take());
+        assertEquals(tasks[4], queue.poll());
+        // 剩下4个仍超过阈值
+        assertEquals(tasks[3], queue.poll(10, TimeUnit.MILLISECONDS));
+        // 回到阈值以内后按先进先出处理
+        assertEquals(tasks[0], queue.poll());
+        assertEquals(tasks[1], queue.take());
+        assertEquals(tasks[2], queue.poll());
+    }
+
+    @Test
+    public void testBounded() {
+        AdaptiveLifoQueue queue = new AdaptiveLifoQueue(2, 1);
+        offer(queue, 2);
+        assertFalse(queue.offer(new Noop()));
+        assertEquals(0, queue.remainingCapacity());
+    }
+
+    @Test
+    public void testWithThreadPool() throws InterruptedException {
+        AdaptiveLifoQueue queue = new AdaptiveLifoQueue(100, 1000);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue);
+        try {
+            final StringBuilder order = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                final int n = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.append(n);
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            assertEquals("01234", order.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Runnable[] offer(AdaptiveLifoQueue queue, int n) {
+        Runnable[] tasks = new Runnable[n];
+        for (int i = 0; i < n; i++) {
+            tasks[i] = new Noop();
+            queue.offer(tasks[i]);
+        }
+        return tasks;
+    }
+
+    private static final class Noop implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package mango.dispatcher;
+
+import mango.metrics.Metrics;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ricky Fung
+ */
+public class BulkheadTest {
+
+    @Test
+    public void testLoserDoesNotRemoveGauges() {
+        Bulkhead winner = new Bulkhead(20880, "svc", 1, new ArrayBlockingQueue<Runnable>(1));
+        Bulkhead loser = new Bulkhead(20880, "svc", 1, new ArrayBlockingQueue<Runnable>(1));
+        winner.registerMetrics();
+        // 并发创建失败的实例被关闭
+        loser.shutdown();
+        assertTrue(Metrics.snapshot().containsKey("server.bulkhead.20880.svc.active"));
+        winner.shutdown();
+        assertFalse(Metrics.snapshot().containsKey("server.bulkhead.20880.svc.active"));
+    }
+
+    @Test
+    public void testGaugesKeyedByPort() {
+        Bulkhead first = new Bulkhead(20881, "svc", 1, new ArrayBlockingQueue<Runnable>(1));
+        Bulkhead second = new Bulkhead(20882, "svc", 1, new ArrayBlockingQueue<Runnable>(1));
+        first.registerMetrics();
+        second.registerMetrics();
+        first.shutdown();
+        Map<String, Long> snapshot = Metrics.snapshot();
+        assertFalse(snapshot.containsKey("server.bulkhead.20881.svc.queued"));
+        assertTrue(snapshot.containsKey("server.bulkhead.20882.svc.queued"));
+        second.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectWhenSaturated() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead(20883, "slow", 1, new ArrayBlockingQueue<Runnable>(1));
+        bulkhead.registerMetrics();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            bulkhead.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            bulkhead.execute(new Noop());
+            assertEquals(100L, (long) Metrics.snapshot().get("server.bulkhead.20883.slow.saturation"));
+            try {
+                bulkhead.execute(new Noop());
+                fail();
+            } catch (RejectedExecutionException expected) {
+            }
+            assertEquals(1L, (long) Metrics.snapshot().get("server.bulkhead.20883.slow.rejected"));
+        } finally {
+            release.countDown();
+            bulkhead.shutdown();
+        }
+    }
+
+    private static final class Noop implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+}
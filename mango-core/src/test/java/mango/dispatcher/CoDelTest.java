@@ -0,0 +1,50 @@
+package mango.dispatcher;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class CoDelTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testBurstIsNotDropped() {
+        CoDel codel = new CoDel(5, 1000);
+        // 第一个interval内还没有统计结果，突发的长排队不拒绝
+        assertFalse(codel.shouldDrop(100 * MS));
+        assertFalse(codel.isOverloaded());
+    }
+
+    @Test
+    public void testStandingQueueIsDropped() throws InterruptedException {
+        CoDel codel = new CoDel(5, 20);
+        codel.shouldDrop(50 * MS);
+        codel.shouldDrop(30 * MS);
+        Thread.sleep(40);
+        // 上一个interval的最小排队时间30ms超过target
+        assertTrue(codel.shouldDrop(50 * MS));
+        assertTrue(codel.isOverloaded());
+        // 不超过2*target的请求仍然处理
+        assertFalse(codel.shouldDrop(8 * MS));
+    }
+
+    @Test
+    public void testRecoversWhenQueueDrains() throws InterruptedException {
+        CoDel codel = new CoDel(5, 20);
+        codel.shouldDrop(50 * MS);
+        Thread.sleep(40);
+        assertTrue(codel.shouldDrop(50 * MS));
+        // 本interval内出现过短排队，下一个interval恢复
+        codel.shouldDrop(MS);
+        Thread.sleep(40);
+        assertFalse(codel.shouldDrop(50 * MS));
+        assertFalse(codel.isOverloaded());
+    }
+}
@@ -0,0 +1,189 @@
+package mango.dispatcher;
+
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
+import mango.rpc.DefaultProvider;
+import mango.rpc.MessageRouter;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ricky Fung
+ */
+public class MethodDispatcherTest {
+
+    public interface DemoService {
+        @Dispatch(DispatchMode.DIRECT)
+        String direct();
+
+        @Dispatch(value = DispatchMode.ISOLATED, threads = 1)
+        String isolated();
+
+        String pooled();
+    }
+
+    private MethodDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testResolveByAnnotation() throws Exception {
+        dispatcher = newDispatcher(new HashMap<String, String>());
+
+        assertSame(Thread.currentThread(), runOn("direct"));
+        Thread isolated = runOn("isolated");
+        Thread pooled = runOn("pooled");
+        assertTrue(isolated != Thread.currentThread());
+        assertTrue(pooled != Thread.currentThread());
+        assertTrue(isolated != pooled);
+        // 同一个方法复用同一个独占线程池
+        assertSame(isolated, runOn("isolated"));
+    }
+
+    @Test(timeout = 10000)
+    public void testMethodBulkheadOverridesAnnotation() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.bulkheadMethods.getName(), "direct:1:1");
+        dispatcher = newDispatcher(params);
+
+        assertTrue(runOn("direct") != Thread.currentThread());
+    }
+
+    @Test(timeout = 10000)
+    public void testBusyWhenIsolatedQueueFull() throws Exception {
+        dispatcher = newDispatcher(new HashMap<String, String>());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            dispatcher.dispatch(newRequest("isolated"), new Task() {
+                @Override
+                protected void process() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 独占线程忙，队列长度为1
+            dispatcher.dispatch(newRequest("isolated"), new Task());
+            try {
+                dispatcher.dispatch(newRequest("isolated"), new Task());
+                fail("queue should be full");
+            } catch (RejectedExecutionException expected) {
+                // 服务端据此返回BUSY
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testUnknownMethodNotCached() throws Exception {
+        dispatcher = newDispatcher(new HashMap<String, String>());
+        for (int i = 0; i < 100; i++) {
+            runOn("missing" + i);
+        }
+        DefaultRequest unknownService = newRequest("pooled");
+        unknownService.setInterfaceName("mango.test.UnknownService");
+        run(unknownService);
+        assertEquals(0, executorCount());
+
+        runOn("pooled");
+        assertEquals(1, executorCount());
+    }
+
+    private MethodDispatcher newDispatcher(Map<String, String> params) {
+        params.put(URLParam.workerQueueSize.getName(), "1");
+        params.put(URLParam.minWorkerThread.getName(), "1");
+        params.put(URLParam.maxWorkerThread.getName(), "1");
+        params.put(URLParam.virtualThreads.getName(), "false");
+        URL url = new URL("mango", "127.0.0.1", 0, DemoService.class.getName(), params);
+        DemoService impl = new DemoService() {
+            @Override
+            public String direct() {
+                return "direct";
+            }
+
+            @Override
+            public String isolated() {
+                return "isolated";
+            }
+
+            @Override
+            public String pooled() {
+                return "pooled";
+            }
+        };
+        MethodDispatcher dispatcher = new MethodDispatcher();
+        dispatcher.init(url, new MessageRouter(new DefaultProvider<>(impl, url, DemoService.class)));
+        return dispatcher;
+    }
+
+    private Thread runOn(String method) throws InterruptedException {
+        return run(newRequest(method));
+    }
+
+    /**
+     * 派发请求并返回执行该请求的线程
+     */
+    private Thread run(DefaultRequest request) throws InterruptedException {
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        dispatcher.dispatch(request, new Task() {
+            @Override
+            protected void process() {
+                thread.set(Thread.currentThread());
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return thread.get();
+    }
+
+    private DefaultRequest newRequest(String method) {
+        DefaultRequest request = new DefaultRequest();
+        request.setInterfaceName(DemoService.class.getName());
+        request.setMethodName(method);
+        request.setParameterTypes(new Class<?>[0]);
+        request.setArguments(new Object[0]);
+        return request;
+    }
+
+    private int executorCount() throws Exception {
+        Field field = MethodDispatcher.class.getDeclaredField("executors");
+        field.setAccessible(true);
+        return ((Map<?, ?>) field.get(dispatcher)).size();
+    }
+
+    private static class Task extends DispatchTask {
+        @Override
+        protected void process() {
+        }
+
+        @Override
+        public void reject() {
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package mango.dispatcher;
+
+import mango.core.DefaultRequest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ricky Fung
+ */
+public class OrderedExecutorTest {
+
+    @Test(timeout = 30000)
+    public void testPerKeyOrdering() throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1024));
+        try {
+            OrderedExecutor executor = new OrderedExecutor(pool, 8, 10000, 0, null);
+            final int keys = 32;
+            final int perKey = 200;
+            final ConcurrentHashMap<Integer, List<Integer>> executed = new ConcurrentHashMap<>();
+            final CountDownLatch done = new CountDownLatch(keys * perKey);
+            for (int i = 0; i < perKey; i++) {
+                for (int k = 0; k < keys; k++) {
+                    final int key = k;
+                    final int seq = i;
+                    executor.execute(newRequest(key), new Runnable() {
+                        @Override
+                        public void run() {
+                            List<Integer> list = executed.get(key);
+                            if (list == null) {
+                                list = new ArrayList<>();
+                                executed.put(key, list);
+                            }
+                            list.add(seq);
+                            done.countDown();
+                        }
+                    });
+                }
+            }
+            assertTrue(done.await(20, TimeUnit.SECONDS));
+            for (int k = 0; k < keys; k++) {
+                List<Integer> list = executed.get(k);
+                assertEquals(perKey, list.size());
+                for (int i = 0; i < perKey; i++) {
+                    assertEquals(i, (int) list.get(i));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStripeFull() {
+        ManualExecutor pool = new ManualExecutor();
+        OrderedExecutor executor = new OrderedExecutor(pool, 1, 2, 0, null);
+        executor.execute(newRequest(1), new Task());
+        executor.execute(newRequest(1), new Task());
+        try {
+            executor.execute(newRequest(1), new Task());
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        pool.runAll();
+        executor.execute(newRequest(1), new Task());
+    }
+
+    @Test
+    public void testQueueLimitSharedByStripes() {
+        ManualExecutor pool = new ManualExecutor();
+        OrderedExecutor executor = new OrderedExecutor(pool, 8, 2, 0, null);
+        executor.execute(newRequest(1), new Task());
+        executor.execute(newRequest(2), new Task());
+        // 不同分段合计也不能超过队列长度
+        try {
+            executor.execute(newRequest(3), new Task());
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        pool.runAll();
+        executor.execute(newRequest(3), new Task());
+    }
+
+    @Test
+    public void testPoolRejectsSubmit() {
+        ManualExecutor pool = new ManualExecutor();
+        pool.rejecting = true;
+        OrderedExecutor executor = new OrderedExecutor(pool, 1, 1, 0, null);
+        Task task = new Task();
+        try {
+            executor.execute(newRequest(1), task);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        // 被拒绝的任务已撤回，不占用分段队列，也不会再被执行
+        pool.rejecting = false;
+        Task next = new Task();
+        executor.execute(newRequest(1), next);
+        pool.runAll();
+        assertEquals(0, task.processed.get() + task.rejected.get());
+        assertEquals(1, next.processed.get());
+    }
+
+    @Test
+    public void testPoolRejectsResubmit() {
+        ManualExecutor pool = new ManualExecutor();
+        OrderedExecutor executor = new OrderedExecutor(pool, 1, 100, 0, null);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Task task = new Task();
+            tasks.add(task);
+            executor.execute(newRequest(1), task);
+        }
+        // 一批执行完后重新提交被拒绝，剩余任务返回BUSY而不是滞留在队列中
+        pool.rejecting = true;
+        pool.runAll();
+        int processed = 0;
+        int rejected = 0;
+        for (Task task : tasks) {
+            processed += task.processed.get();
+            rejected += task.rejected.get();
+        }
+        assertEquals(20, processed + rejected);
+        assertTrue(processed > 0);
+        assertTrue(rejected > 0);
+
+        pool.rejecting = false;
+        Task next = new Task();
+        executor.execute(newRequest(1), next);
+        pool.runAll();
+        assertEquals(1, next.processed.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testSharedPoolSaturation() throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(2));
+        try {
+            final OrderedExecutor executor = new OrderedExecutor(pool, 16, 1000, 0, null);
+            final int producers = 4;
+            final int perProducer = 5000;
+            final AtomicInteger thrown = new AtomicInteger();
+            final List<Task> tasks = new ArrayList<>();
+            for (int i = 0; i < producers * perProducer; i++) {
+                tasks.add(new Task());
+            }
+            Thread[] threads = new Thread[producers];
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                threads[p] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < perProducer; i++) {
+                            try {
+                                executor.execute(newRequest(i % 64), tasks.get(producer * perProducer + i));
+                            } catch (RejectedExecutionException e) {
+                                thrown.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+                threads[p].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+            // 每个任务要么执行、要么返回BUSY、要么被调用方拒绝，没有滞留在分段队列中
+            int handled = thrown.get();
+            for (Task task : tasks) {
+                int n = task.processed.get() + task.rejected.get();
+                assertTrue(n <= 1);
+                handled += n;
+            }
+            assertEquals(producers * perProducer, handled);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static DefaultRequest newRequest(int key) {
+        DefaultRequest request = new DefaultRequest();
+        request.setArguments(new Object[]{key});
+        return request;
+    }
+
+    private static final class Task extends DispatchTask {
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+
+        @Override
+        protected void process() {
+            processed.incrementAndGet();
+        }
+
+        @Override
+        public void reject() {
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * 由测试线程手动执行提交的任务
+     */
+    private static final class ManualExecutor implements Executor {
+        final List<Runnable> submitted = new ArrayList<>();
+        volatile boolean rejecting;
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (rejecting) {
+                throw new RejectedExecutionException();
+            }
+            submitted.add(command);
+        }
+
+        void runAll() {
+            for (;;) {
+                Runnable command;
+                synchronized (this) {
+                    if (submitted.isEmpty()) {
+                        return;
+                    }
+                    command = submitted.remove(0);
+                }
+                command.run();
+            }
+        }
+    }
+}
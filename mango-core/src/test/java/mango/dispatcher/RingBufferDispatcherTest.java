@@ -0,0 +1,75 @@
+package mango.dispatcher;
+
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class RingBufferDispatcherTest {
+
+    @Test(timeout = 10000)
+    public void testDispatch() throws InterruptedException {
+        RingBufferDispatcher dispatcher = newDispatcher();
+        try {
+            int count = 100;
+            CountDownLatch latch = new CountDownLatch(count);
+            for (int i = 0; i < count; i++) {
+                dispatcher.dispatch(newRequest(i), new CountDownTask(latch));
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testDispatchAfterShutdown() {
+        RingBufferDispatcher dispatcher = newDispatcher();
+        dispatcher.shutdown();
+        dispatcher.dispatch(newRequest(1), new CountDownTask(new CountDownLatch(1)));
+    }
+
+    private static RingBufferDispatcher newDispatcher() {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.ringBufferWorkers.getName(), "2");
+        params.put(URLParam.ringBufferSize.getName(), "256");
+        params.put(URLParam.waitStrategy.getName(), "park");
+        RingBufferDispatcher dispatcher = new RingBufferDispatcher();
+        dispatcher.init(new URL("mango", "127.0.0.1", 0, "test", params), null);
+        return dispatcher;
+    }
+
+    private static DefaultRequest newRequest(long requestId) {
+        DefaultRequest request = new DefaultRequest();
+        request.setRequestId(requestId);
+        return request;
+    }
+
+    private static final class CountDownTask extends DispatchTask {
+        private final CountDownLatch latch;
+
+        CountDownTask(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        protected void process() {
+            latch.countDown();
+        }
+
+        @Override
+        public void reject() {
+        }
+    }
+}
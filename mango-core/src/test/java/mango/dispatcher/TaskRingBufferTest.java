@@ -0,0 +1,156 @@
+package mango.dispatcher;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class TaskRingBufferTest {
+
+    @Test
+    public void testCapacityRoundedUp() {
+        TaskRingBuffer ring = new TaskRingBuffer(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(new Task(i), false));
+        }
+        assertFalse(ring.offer(new Task(4), false));
+    }
+
+    @Test
+    public void testWrapAround() {
+        TaskRingBuffer ring = new TaskRingBuffer(4);
+        DispatchTask[] batch = new DispatchTask[3];
+        int next = 0;
+        int expected = 0;
+        // 序号多次绕过槽位数组
+        for (int round = 0; round < 50; round++) {
+            while (ring.offer(new Task(next), false)) {
+                next++;
+            }
+            int n = ring.drainTo(batch);
+            assertTrue(n > 0);
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected++, ((Task) batch[i]).id);
+            }
+        }
+        int n;
+        while ((n = ring.drainTo(batch)) > 0) {
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected++, ((Task) batch[i]).id);
+            }
+        }
+        assertEquals(next, expected);
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void testMultiProducer() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 20000;
+        final TaskRingBuffer ring = new TaskRingBuffer(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        Task task = new Task(producer * perProducer + i);
+                        while (!ring.offer(task, false)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+
+        // 每个生产者内部的顺序保持不变，且不丢失、不重复
+        int[] last = new int[producers];
+        for (int p = 0; p < producers; p++) {
+            last[p] = -1;
+        }
+        DispatchTask[] batch = new DispatchTask[16];
+        int received = 0;
+        while (received < producers * perProducer) {
+            int n = ring.drainTo(batch);
+            if (n == 0) {
+                Thread.yield();
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                int id = ((Task) batch[i]).id;
+                int producer = id / perProducer;
+                int seq = id % perProducer;
+                assertEquals(last[producer] + 1, seq);
+                last[producer] = seq;
+            }
+            received += n;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testParkUnpark() throws InterruptedException {
+        final TaskRingBuffer ring = new TaskRingBuffer(4);
+        final AtomicReference<DispatchTask> received = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                DispatchTask[] batch = new DispatchTask[1];
+                while (ring.drainTo(batch) == 0) {
+                    ring.park(TimeUnit.SECONDS.toNanos(60));
+                }
+                received.set(batch[0]);
+                done.countDown();
+            }
+        });
+        ring.setConsumer(consumer);
+        consumer.start();
+        // 等消费者挂起
+        while (consumer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        Task task = new Task(1);
+        assertTrue(ring.offer(task, true));
+        // 远小于挂起时间，说明是被生产者唤醒的
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(task, received.get());
+    }
+
+    private static final class Task extends DispatchTask {
+        final int id;
+
+        Task(int id) {
+            this.id = id;
+        }
+
+        @Override
+        protected void process() {
+        }
+
+        @Override
+        public void reject() {
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package mango.protocol;
+
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.exception.RpcFrameworkException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Ricky Fung
+ */
+public class DefaultRpcProtocolTest {
+
+    public interface EchoService {
+        String echo(String msg);
+    }
+
+    @Test
+    public void testReferAfterOpenFailure() throws Exception {
+        // 取一个空闲端口后关闭，保证连接被拒绝
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.minPoolSize.getName(), "1");
+        URL url = new URL("mango", "127.0.0.1", port, EchoService.class.getName(), params);
+        DefaultRpcProtocol protocol = new DefaultRpcProtocol();
+        // 第一次连接失败后共享客户端被移除，第二次引用重新连接而不是复用半初始化的客户端
+        for (int i = 0; i < 2; i++) {
+            try {
+                protocol.refer(EchoService.class, url, url);
+                Assert.fail("connect should fail");
+            } catch (RpcFrameworkException e) {
+                Assert.assertTrue(e.getMessage().contains("failure"));
+            }
+        }
+    }
+}
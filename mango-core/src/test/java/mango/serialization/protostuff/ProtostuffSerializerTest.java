@@ -0,0 +1,116 @@
+package mango.serialization.protostuff;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ricky Fung
+ */
+public class ProtostuffSerializerTest {
+
+    private final ProtostuffSerializer serializer = new ProtostuffSerializer();
+
+    @Test
+    public void testStreamRoundTrip() throws Exception {
+        User user = new User("ricky", 28, Arrays.asList("a", "b"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(user, out);
+
+        assertEquals(user, serializer.deserialize(new ByteArrayInputStream(out.toByteArray()), User.class));
+        // 流式和byte[]方式写出的内容可以互相读取
+        assertEquals(user, serializer.deserialize(serializer.serialize(user), User.class));
+    }
+
+    @Test
+    public void testDirectAndHeapByteBuf() throws Exception {
+        // 堆内存直接读底层数组，堆外内存走流式读取，两者都要推进readerIndex
+        User user = new User("ricky", 28, Arrays.asList("a", "b"));
+        ByteBuf[] bufs = {Unpooled.buffer(), Unpooled.directBuffer()};
+        for (ByteBuf buf : bufs) {
+            try {
+                buf.writeByte(0);
+                serializer.serialize(user, buf);
+                buf.skipBytes(1);
+                assertEquals(user, serializer.deserialize(buf, User.class));
+                assertEquals(0, buf.readableBytes());
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    public void testByteBufRoundTrip() throws Exception {
+        User user = new User("ricky", 28, Arrays.asList("a", "b"));
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.serialize(user, buf);
+            assertEquals(user, serializer.deserialize(buf, User.class));
+        } finally {
+            buf.release();
+        }
+    }
+
+    public static class User implements Serializable {
+        private String name;
+        private int age;
+        private List<String> tags = new ArrayList<>();
+
+        public User() {
+        }
+
+        public User(String name, int age, List<String> tags) {
+            this.name = name;
+            this.age = age;
+            this.tags = new ArrayList<>(tags);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof User)) {
+                return false;
+            }
+            User other = (User) o;
+            return age == other.age && name.equals(other.name) && tags.equals(other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + age;
+        }
+    }
+}
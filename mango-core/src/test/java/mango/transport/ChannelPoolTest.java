@@ -0,0 +1,167 @@
+package mango.transport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultResponseFuture;
+import mango.core.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class ChannelPoolTest {
+
+    private static final ChannelHandler NOOP = new NoopHandler();
+
+    private NioEventLoopGroup group;
+    private Channel server;
+    private ScheduledExecutorService timer;
+    private ChannelPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new NioEventLoopGroup(1);
+        server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(NOOP)
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        timer.shutdownNow();
+        server.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    @Test
+    public void testGrowWhenPending() throws Exception {
+        pool = newPool(1, 2, 1, 60000);
+        pool.init();
+        assertEquals(1, pool.size());
+
+        ChannelWrapper channel = pool.acquire();
+        assertNotNull(channel);
+        channel.addFuture(1L, new DefaultResponseFuture<Response>(1000));
+        pool.acquire();
+        waitFor(2);
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void testShrinkIdleChannels() throws Exception {
+        pool = newPool(1, 3, 1, 0);
+        pool.init();
+        ChannelWrapper channel = pool.acquire();
+        assertTrue(channel.tryAcquire());
+        channel.addFuture(1L, new DefaultResponseFuture<Response>(1000));
+        pool.acquire();
+        waitFor(2);
+
+        channel.removeFuture(1L);
+        Thread.sleep(5);
+        pool.shrink();
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testShrinkKeepsAcquiredChannels() throws Exception {
+        pool = newPool(1, 3, 1, 0);
+        pool.init();
+        ChannelWrapper channel = pool.acquire();
+        assertTrue(channel.tryAcquire());
+        channel.addFuture(1L, new DefaultResponseFuture<Response>(1000));
+        pool.acquire();
+        waitFor(2);
+        channel.removeFuture(1L);
+
+        // 已占用名额但还未登记Future的连接不能被回收
+        for (ChannelWrapper wrapper : pool.getChannels()) {
+            assertTrue(wrapper.tryAcquire());
+        }
+        Thread.sleep(5);
+        pool.shrink();
+        assertEquals(2, pool.size());
+
+        for (ChannelWrapper wrapper : pool.getChannels()) {
+            wrapper.release();
+        }
+        pool.shrink();
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testWriteRefreshesLastWriteTime() throws Exception {
+        pool = newPool(1, 1, 32, 60000);
+        pool.init();
+        ChannelWrapper channel = pool.acquire();
+        long lastWriteTime = channel.getLastWriteTime();
+        Thread.sleep(5);
+        // oneway请求只写出，不登记Future
+        channel.write(Unpooled.EMPTY_BUFFER).sync();
+        assertTrue(channel.getLastWriteTime() > lastWriteTime);
+    }
+
+    @Test
+    public void testReconnectAfterClose() throws Exception {
+        pool = newPool(1, 1, 32, 60000);
+        pool.init();
+        ChannelWrapper channel = pool.acquire();
+        channel.getChannel().close().sync();
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((pool.size() == 0 || pool.getChannels().get(0) == channel) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, pool.size());
+        assertTrue(pool.getChannels().get(0) != channel);
+        assertTrue(pool.isAvailable());
+    }
+
+    private ChannelPool newPool(int min, int max, int growThreshold, int idleTimeout) {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.minPoolSize.getName(), String.valueOf(min));
+        params.put(URLParam.maxPoolSize.getName(), String.valueOf(max));
+        params.put(URLParam.poolGrowThreshold.getName(), String.valueOf(growThreshold));
+        params.put(URLParam.poolIdleTimeout.getName(), String.valueOf(idleTimeout));
+        InetSocketAddress address = (InetSocketAddress) server.localAddress();
+        URL url = new URL("mango", "127.0.0.1", address.getPort(), "test", params);
+        Bootstrap bootstrap = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(NOOP);
+        return new ChannelPool(bootstrap, address, url, timer);
+    }
+
+    private void waitFor(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static class NoopHandler extends ChannelInboundHandlerAdapter {
+    }
+}
@@ -0,0 +1,111 @@
+package mango.transport;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import mango.core.DefaultResponse;
+import mango.exception.RpcTimeoutException;
+import mango.util.Constants;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ricky Fung
+ */
+public class ClientStreamTest {
+
+    private static final long REQUEST_ID = 7;
+
+    @Test
+    public void testReturnsCredits() {
+        EmbeddedChannel channel = newChannel();
+        ChannelWrapper channelWrapper = new ChannelWrapper(channel.newSucceededFuture());
+        ClientStream stream = newStream(channelWrapper, 4, 1000);
+        for (int i = 0; i < 4; i++) {
+            stream.onNext(i);
+        }
+        assertEquals(0, stream.next());
+        assertNull(channel.readOutbound());
+        // 消费半个窗口后归还信用
+        assertEquals(1, stream.next());
+        StreamFrame credit = (StreamFrame) channel.readOutbound();
+        assertTrue(credit.isCredit());
+        assertEquals(2, credit.getCredits());
+
+        assertEquals(2, stream.next());
+        channelWrapper.removeStream(REQUEST_ID).onComplete(new DefaultResponse());
+        assertEquals(3, stream.next());
+        // 服务端已经发完，不再归还信用
+        assertNull(channel.readOutbound());
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void testV1Response() {
+        EmbeddedChannel channel = newChannel();
+        ChannelWrapper channelWrapper = new ChannelWrapper(channel.newSucceededFuture());
+        ClientStream stream = newStream(channelWrapper, 4, 1000);
+        DefaultResponse response = new DefaultResponse();
+        response.setResult(Arrays.asList("a", null, "b"));
+        channelWrapper.removeStream(REQUEST_ID).onComplete(response);
+        assertEquals("a", stream.next());
+        assertNull(stream.next());
+        assertEquals("b", stream.next());
+        assertFalse(stream.hasNext());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testCloseReleasesStream() {
+        EmbeddedChannel channel = newChannel();
+        ChannelWrapper channelWrapper = new ChannelWrapper(channel.newSucceededFuture());
+        channelWrapper.setMaxInFlight(1);
+        assertTrue(channelWrapper.tryAcquire());
+        ClientStream stream = newStream(channelWrapper, 4, 1000);
+        assertEquals(1, channelWrapper.pendingCount());
+        assertTrue(channelWrapper.isSaturated());
+
+        stream.onNext("a");
+        stream.close();
+        StreamFrame cancel = (StreamFrame) channel.readOutbound();
+        assertEquals(REQUEST_ID, cancel.getRequestId());
+        assertEquals(0, cancel.getCredits());
+        assertEquals(0, channelWrapper.pendingCount());
+        assertFalse(channelWrapper.isSaturated());
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void testTimeoutReleasesStream() {
+        EmbeddedChannel channel = newChannel();
+        ChannelWrapper channelWrapper = new ChannelWrapper(channel.newSucceededFuture());
+        channelWrapper.setMaxInFlight(1);
+        assertTrue(channelWrapper.tryAcquire());
+        ClientStream stream = newStream(channelWrapper, 4, 20);
+        try {
+            stream.hasNext();
+            fail();
+        } catch (RpcTimeoutException expected) {
+        }
+        assertTrue(channel.readOutbound() instanceof StreamFrame);
+        assertEquals(0, channelWrapper.pendingCount());
+        assertFalse(channelWrapper.isSaturated());
+    }
+
+    private static EmbeddedChannel newChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.attr(Handshake.VERSION).set(Constants.PROTOCOL_V2);
+        return channel;
+    }
+
+    private static ClientStream newStream(ChannelWrapper channelWrapper, int window, int timeout) {
+        ClientStream stream = new ClientStream(channelWrapper, REQUEST_ID, window, timeout);
+        channelWrapper.addStream(REQUEST_ID, stream);
+        return stream;
+    }
+}
@@ -0,0 +1,66 @@
+package mango.transport;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import mango.core.DefaultResponse;
+import mango.util.Constants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class HeartbeatHandlerTest {
+
+    @Test
+    public void testClientSkipsPeerWithoutHandshake() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(true));
+        ChannelWrapper channelWrapper = new ChannelWrapper(channel.newSucceededFuture());
+        for (int i = 0; i < 10; i++) {
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        }
+        assertNull(channel.readOutbound());
+        assertTrue(channelWrapper.isAvailable());
+    }
+
+    @Test
+    public void testClientMarksUnavailableAndRecoversOnAnyRead() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(true));
+        channel.attr(Handshake.VERSION).set(Constants.PROTOCOL_V2);
+        ChannelWrapper channelWrapper = new ChannelWrapper(channel.newSucceededFuture());
+        for (int i = 0; i < 4; i++) {
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+            assertTrue(channel.readOutbound() instanceof Heartbeat);
+        }
+        assertFalse(channelWrapper.isAvailable());
+
+        // 普通响应同样证明连接正常
+        DefaultResponse response = new DefaultResponse();
+        channel.writeInbound(response);
+        assertSame(response, channel.readInbound());
+        assertTrue(channelWrapper.isAvailable());
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertTrue(channelWrapper.isAvailable());
+    }
+
+    @Test
+    public void testServerKeepsClientWithoutHeartbeat() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(false));
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertTrue(channel.isActive());
+    }
+
+    @Test
+    public void testServerAnswersPingAndClosesIdle() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(false));
+        channel.writeInbound(Heartbeat.ping());
+        Heartbeat pong = (Heartbeat) channel.readOutbound();
+        assertFalse(pong.isRequest());
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertFalse(channel.isActive());
+    }
+}
@@ -0,0 +1,142 @@
+package mango.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import mango.codec.DefaultCodec;
+import mango.common.URL;
+import mango.core.DefaultResponse;
+import mango.exception.RpcFrameworkException;
+import mango.util.Constants;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ricky Fung
+ */
+public class MemoryBudgetTest {
+
+    private static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+    @After
+    public void tearDown() {
+        MemoryBudget.setLimit(0);
+    }
+
+    @Test
+    public void testReservationCapped() {
+        MemoryBudget.setLimit(1000);
+        assertEquals(1000, MemoryBudget.tryReserve(Integer.MAX_VALUE));
+        assertEquals(1000, MemoryBudget.getUsed());
+        assertTrue(MemoryBudget.isExhausted());
+        MemoryBudget.releaseDecoded(1000);
+        assertEquals(0, MemoryBudget.getUsed());
+    }
+
+    @Test
+    public void testAdmitsOneFrameWhenIdle() {
+        MemoryBudget.setLimit(1000);
+        // 待写出的数据占满预算时仍允许解码一帧
+        MemoryBudget.reserve(1000);
+        assertEquals(500, MemoryBudget.tryReserve(500));
+        assertEquals(0, MemoryBudget.tryReserve(1));
+        MemoryBudget.releaseDecoded(500);
+        MemoryBudget.release(1000);
+        assertEquals(0, MemoryBudget.getUsed());
+    }
+
+    @Test
+    public void testPauseResume() {
+        MemoryBudget.setLimit(1000);
+        assertEquals(900, MemoryBudget.tryReserve(900));
+        assertEquals(0, MemoryBudget.tryReserve(200));
+        final AtomicInteger resumed = new AtomicInteger();
+        MemoryBudget.pause(new Runnable() {
+            @Override
+            public void run() {
+                resumed.incrementAndGet();
+            }
+        });
+        assertEquals(0, resumed.get());
+        MemoryBudget.releaseDecoded(900);
+        assertEquals(1, resumed.get());
+    }
+
+    @Test
+    public void testOversizedHeaderWithoutBudget() {
+        assertOversizedHeaderRejected(Integer.MAX_VALUE);
+        assertOversizedHeaderRejected(-1);
+    }
+
+    @Test
+    public void testOversizedHeaderWithBudget() {
+        MemoryBudget.setLimit(4096);
+        assertOversizedHeaderRejected(Integer.MAX_VALUE);
+        assertOversizedHeaderRejected(MAX_FRAME_LENGTH + 1);
+        assertOversizedHeaderRejected(Integer.MIN_VALUE);
+        assertEquals(0, MemoryBudget.getUsed());
+    }
+
+    @Test
+    public void testStalledHeader() {
+        MemoryBudget.setLimit(4096);
+        EmbeddedChannel channel = newDecoder();
+        // 只有帧头，消息体迟迟不到
+        channel.writeInbound(header(Constants.FLAG_REQUEST, 100000));
+        assertNull(channel.readInbound());
+        // 预留的内存不超过预算
+        assertEquals(4096, MemoryBudget.getUsed());
+
+        // 预算被占满时，其他连接空闲也能解码一帧
+        EmbeddedChannel other = newDecoder();
+        ByteBuf heartbeat = header(Constants.FLAG_HEARTBEAT_REQUEST, 0);
+        other.writeInbound(heartbeat);
+        assertTrue(other.readInbound() instanceof Heartbeat);
+
+        channel.close();
+        assertEquals(0, MemoryBudget.getUsed());
+        assertFalse(MemoryBudget.isExhausted());
+    }
+
+    private void assertOversizedHeaderRejected(int dataLength) {
+        EmbeddedChannel channel = newDecoder();
+        try {
+            // 帧头即可判断，不等待消息体
+            channel.writeInbound(header(Constants.FLAG_REQUEST, dataLength));
+            fail();
+        } catch (DecoderException e) {
+            assertTrue(e.getCause() instanceof RpcFrameworkException);
+        }
+        // 请求帧回复异常响应
+        channel.flush();
+        DefaultResponse response = (DefaultResponse) channel.readOutbound();
+        assertEquals(1L, (long) response.getRequestId());
+        assertTrue(response.getException() instanceof RpcFrameworkException);
+        assertEquals(0, MemoryBudget.getUsed());
+        channel.close();
+    }
+
+    private static EmbeddedChannel newDecoder() {
+        URL url = new URL("mango", "127.0.0.1", 0, "test", new HashMap<String, String>());
+        return new EmbeddedChannel(new NettyDecoder(new DefaultCodec(), url, MAX_FRAME_LENGTH, Constants.HEADER_SIZE, 4));
+    }
+
+    private static ByteBuf header(byte messageType, int dataLength) {
+        ByteBuf header = Unpooled.buffer(Constants.HEADER_SIZE);
+        header.writeShort(Constants.NETTY_MAGIC_TYPE);
+        header.writeByte(messageType);
+        header.writeLong(1);
+        header.writeInt(dataLength);
+        return header;
+    }
+}
@@ -0,0 +1,234 @@
+package mango.transport;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import mango.codec.Codec;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
+import mango.core.DefaultResponse;
+import mango.core.Request;
+import mango.core.Response;
+import mango.core.ResponseFuture;
+import mango.core.extension.ExtensionLoader;
+import mango.exception.RpcBusyException;
+import mango.exception.RpcFrameworkException;
+import mango.exception.RpcTimeoutException;
+import mango.util.Constants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ricky Fung
+ */
+public class NettyClientImplTest {
+
+    private static final AtomicLong REQUEST_ID = new AtomicLong();
+
+    private NioEventLoopGroup group;
+    private Channel server;
+    // 服务端收到的连接
+    private final List<Channel> accepted = new CopyOnWriteArrayList<>();
+    // 服务端是否回复响应
+    private volatile boolean reply;
+    private NettyClientImpl client;
+
+    @Before
+    public void setUp() throws Exception {
+        final URL serverUrl = new URL("mango", "127.0.0.1", 0, "test", new HashMap<String, String>());
+        final Codec codec = ExtensionLoader.getExtensionLoader(Codec.class).getExtension(URLParam.codec.getValue());
+        group = new NioEventLoopGroup(1);
+        server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) throws Exception {
+                        accepted.add(ch);
+                        ch.pipeline().addLast(new NettyDecoder(codec, serverUrl, Integer.MAX_VALUE, Constants.HEADER_SIZE, 4),
+                                new NettyEncoder(codec, serverUrl), new HandshakeHandler(false, Constants.PROTOCOL_V2),
+                                new ReplyHandler());
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        server.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testInvokeSync() throws Exception {
+        reply = true;
+        client = newClient(new HashMap<String, String>());
+        Response response = client.invokeSync(newRequest(), 5000);
+        assertEquals("ok", response.getResult());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentInvokeSync() throws Exception {
+        reply = true;
+        client = newClient(new HashMap<String, String>());
+        final AtomicInteger success = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            Request request = newRequest();
+                            Response response = client.invokeSync(request, 5000);
+                            if ("ok".equals(response.getResult()) && request.getRequestId().equals(response.getRequestId())) {
+                                success.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        // 计入失败
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // 同步调用在各自的Future上等待，响应按请求id交给对应的调用线程
+        assertEquals(threads.length * 200, success.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testFailPendingOnChannelInactive() throws Exception {
+        client = newClient(new HashMap<String, String>());
+        ResponseFuture<Response> future = client.invokeAsync(newRequest(), 30000);
+        waitAccepted();
+
+        long start = System.currentTimeMillis();
+        for (Channel channel : accepted) {
+            channel.close();
+        }
+        try {
+            future.get();
+            fail("pending request should fail");
+        } catch (RpcFrameworkException e) {
+            // 连接断开后立即失败，不等到超时
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailfastWhenSaturated() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.maxInFlight.getName(), "1");
+        params.put(URLParam.backpressure.getName(), "failfast");
+        client = newClient(params);
+        client.invokeAsync(newRequest(), 5000);
+
+        long start = System.currentTimeMillis();
+        try {
+            client.invokeAsync(newRequest(), 5000);
+            fail("saturated connection should fail fast");
+        } catch (RpcBusyException e) {
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitUntilTimeout() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.maxInFlight.getName(), "1");
+        client = newClient(params);
+        client.invokeAsync(newRequest(), 5000);
+
+        long start = System.currentTimeMillis();
+        try {
+            client.invokeAsync(newRequest(), 200);
+            fail("saturated connection should fail after waiting");
+        } catch (RpcBusyException e) {
+            // 在请求超时时间内等待名额
+            assertTrue(System.currentTimeMillis() - start >= 190);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitCountsTowardsTimeout() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.maxInFlight.getName(), "1");
+        client = newClient(params);
+        // 第一个请求超时后归还名额
+        client.invokeAsync(newRequest(), 300);
+
+        long start = System.currentTimeMillis();
+        ResponseFuture<Response> future = client.invokeAsync(newRequest(), 600);
+        long waited = System.currentTimeMillis() - start;
+        assertTrue(waited >= 250);
+        try {
+            future.get();
+            fail("request should timeout");
+        } catch (RpcTimeoutException e) {
+            // 等待名额的时间计入超时，总耗时不超过一个超时时间
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue("elapsed " + elapsed, elapsed < 600 + 150);
+        }
+    }
+
+    private NettyClientImpl newClient(Map<String, String> params) {
+        params.put(URLParam.minPoolSize.getName(), "1");
+        params.put(URLParam.maxPoolSize.getName(), "1");
+        params.put(URLParam.heartbeat.getName(), "0");
+        InetSocketAddress address = (InetSocketAddress) server.localAddress();
+        NettyClientImpl client = new NettyClientImpl(new URL("mango", "127.0.0.1", address.getPort(), "test", params));
+        client.open();
+        return client;
+    }
+
+    private Request newRequest() {
+        DefaultRequest request = new DefaultRequest();
+        request.setRequestId(REQUEST_ID.incrementAndGet());
+        request.setInterfaceName("mango.test.EchoService");
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setArguments(new Object[]{"hello"});
+        return request;
+    }
+
+    private void waitAccepted() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (accepted.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private class ReplyHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (reply && msg instanceof Request) {
+                DefaultResponse response = new DefaultResponse();
+                response.setRequestId(((Request) msg).getRequestId());
+                response.setResult("ok");
+                ctx.writeAndFlush(response);
+            }
+        }
+    }
+}
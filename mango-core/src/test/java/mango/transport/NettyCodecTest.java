@@ -0,0 +1,261 @@
+package mango.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import mango.codec.Codec;
+import mango.codec.DefaultCodec;
+import mango.codec.VarInts;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
+import mango.core.DefaultResponse;
+import mango.core.Response;
+import mango.exception.RpcBusyException;
+import mango.util.Constants;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class NettyCodecTest {
+
+    private static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+    private final Codec codec = new DefaultCodec();
+
+    @Test
+    public void testV2EncodeWithPrefix() throws Exception {
+        DefaultRequest request = newRequest(300);
+        NettyEncoder encoder = new NettyEncoder(codec, newUrl(null));
+        EmbeddedChannel channel = new EmbeddedChannel(encoder);
+        channel.attr(Handshake.VERSION).set(Constants.PROTOCOL_V2);
+
+        ByteBuf compact = Unpooled.buffer();
+        encoder.encode(channel.pipeline().context(encoder), request, compact);
+
+        // 帧不在缓冲区开头时不能移动帧头，长度字段按最大宽度补齐
+        ByteBuf out = Unpooled.buffer();
+        out.writeBytes(new byte[]{1, 2, 3});
+        encoder.encode(channel.pipeline().context(encoder), request, out);
+        assertEquals(3, out.readerIndex());
+        ByteBuf length = compact.slice(Constants.V2_FIXED_HEADER_SIZE + VarInts.size(300), VarInts.MAX_VARINT_SIZE);
+        int bodyLength = (int) VarInts.read(length);
+        assertEquals(compact.readableBytes() + VarInts.MAX_VARINT_SIZE - VarInts.size(bodyLength), out.readableBytes());
+
+        assertRequest(request, decode(out));
+        assertRequest(request, decode(compact));
+    }
+
+    @Test
+    public void testZeroCopyToggle() {
+        for (byte version : new byte[]{Constants.PROTOCOL_V1, Constants.PROTOCOL_V2}) {
+            for (String zeroCopy : new String[]{"true", "false"}) {
+                Map<String, String> params = new HashMap<>();
+                params.put(URLParam.zeroCopy.getName(), zeroCopy);
+                URL url = new URL("mango", "127.0.0.1", 0, "test", params);
+                EmbeddedChannel channel = new EmbeddedChannel(
+                        new NettyDecoder(codec, url, MAX_FRAME_LENGTH, Constants.HEADER_SIZE, 4), new NettyEncoder(codec, url));
+                channel.attr(Handshake.VERSION).set(version);
+                DefaultRequest request = newRequest(11);
+                channel.writeOutbound(request);
+                ByteBuf frame = (ByteBuf) channel.readOutbound();
+                assertEquals(version == Constants.PROTOCOL_V2, frame.getByte(frame.readerIndex() + 2) == Constants.PROTOCOL_V2);
+                channel.writeInbound(frame);
+                assertRequest(request, channel.readInbound());
+                assertEquals(0, frame.refCnt());
+            }
+        }
+    }
+
+    @Test
+    public void testBusyResponse() {
+        for (byte version : new byte[]{Constants.PROTOCOL_V1, Constants.PROTOCOL_V2}) {
+            URL url = newUrl(null);
+            EmbeddedChannel channel = new EmbeddedChannel(
+                    new NettyDecoder(codec, url, MAX_FRAME_LENGTH, Constants.HEADER_SIZE, 4), new NettyEncoder(codec, url));
+            channel.attr(Handshake.VERSION).set(version);
+            DefaultResponse busy = new DefaultResponse();
+            busy.setRequestId(21L);
+            busy.setException(new RpcBusyException("server busy"));
+            channel.writeOutbound(busy);
+            ByteBuf frame = (ByteBuf) channel.readOutbound();
+            if (version == Constants.PROTOCOL_V1) {
+                // v1按普通响应编码，未升级的对端也能读出异常
+                assertEquals(Constants.FLAG_RESPONSE, frame.getByte(frame.readerIndex() + 2));
+                assertTrue(frame.getInt(frame.readerIndex() + Constants.HEADER_SIZE - 4) > 0);
+            } else {
+                assertEquals(Constants.V2_STATUS_BUSY, frame.getByte(frame.readerIndex() + 5));
+            }
+            channel.writeInbound(frame);
+            Response response = (Response) channel.readInbound();
+            assertEquals(21L, (long) response.getRequestId());
+            assertTrue(response.getException() instanceof RpcBusyException);
+        }
+    }
+
+    @Test
+    public void testDecodeLegacyBusyFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new NettyDecoder(codec, newUrl(null), MAX_FRAME_LENGTH, Constants.HEADER_SIZE, 4));
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeShort(Constants.NETTY_MAGIC_TYPE);
+        frame.writeByte(Constants.FLAG_RESPONSE_BUSY);
+        frame.writeLong(22L);
+        frame.writeInt(0);
+        channel.writeInbound(frame);
+        Response response = (Response) channel.readInbound();
+        assertEquals(22L, (long) response.getRequestId());
+        assertTrue(response.getException() instanceof RpcBusyException);
+    }
+
+    @Test
+    public void testNegativeHeartbeatId() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new NettyEncoder(codec, newUrl(null)));
+        encoder.attr(Handshake.VERSION).set(Constants.PROTOCOL_V2);
+        encoder.writeOutbound(new Heartbeat(true, -5));
+        ByteBuf frame = (ByteBuf) encoder.readOutbound();
+        assertEquals(Constants.V2_FIXED_HEADER_SIZE + VarInts.MAX_VARLONG_SIZE + 1, frame.readableBytes());
+
+        Heartbeat heartbeat = (Heartbeat) decode(frame);
+        assertTrue(heartbeat.isRequest());
+        assertEquals(-5, heartbeat.getId());
+    }
+
+    @Test
+    public void testPartialFrames() {
+        for (byte version : new byte[]{Constants.PROTOCOL_V1, Constants.PROTOCOL_V2}) {
+            EmbeddedChannel encoder = new EmbeddedChannel(new NettyEncoder(codec, newUrl(null)));
+            encoder.attr(Handshake.VERSION).set(version);
+            DefaultRequest first = newRequest(1);
+            DefaultRequest second = newRequest(Long.MAX_VALUE);
+            encoder.writeOutbound(first, second);
+            ByteBuf data = Unpooled.buffer();
+            ByteBuf frame;
+            while ((frame = (ByteBuf) encoder.readOutbound()) != null) {
+                data.writeBytes(frame);
+                frame.release();
+            }
+
+            // 每次只到达一个字节，帧完整时才解码出消息
+            EmbeddedChannel decoder = newDecoder(newUrl(null));
+            int total = data.readableBytes();
+            int messages = 0;
+            for (int i = 0; i < total; i++) {
+                decoder.writeInbound(data.readRetainedSlice(1));
+                Object msg = decoder.readInbound();
+                if (msg != null) {
+                    assertRequest(messages == 0 ? first : second, msg);
+                    messages++;
+                }
+            }
+            assertEquals(2, messages);
+            assertNull(decoder.readInbound());
+        }
+    }
+
+    @Test
+    public void testCompressedFrame() {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.compression.getName(), "deflate");
+        params.put(URLParam.compressThreshold.getName(), "1024");
+        EmbeddedChannel encoder = new EmbeddedChannel(new NettyEncoder(codec, new URL("mango", "127.0.0.1", 0, "test", params)));
+        encoder.attr(Handshake.VERSION).set(Constants.PROTOCOL_V2);
+
+        DefaultRequest request = newRequest(9);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("mango");
+        }
+        request.setArguments(new Object[]{text.toString()});
+        encoder.writeOutbound(request);
+        ByteBuf frame = (ByteBuf) encoder.readOutbound();
+        assertTrue((frame.getByte(frame.readerIndex() + 3) & Constants.V2_FLAG_COMPRESSED) != 0);
+        assertTrue(frame.readableBytes() < text.length());
+        // 解码端不需要配置压缩方式
+        assertRequest(request, decode(frame));
+
+        // 小于阈值的消息体不压缩
+        encoder.writeOutbound(newRequest(10));
+        frame = (ByteBuf) encoder.readOutbound();
+        assertEquals(0, frame.getByte(frame.readerIndex() + 3) & Constants.V2_FLAG_COMPRESSED);
+        assertRequest(newRequest(10), decode(frame));
+    }
+
+    @Test
+    public void testHandshakeToV1OnlyPeer() {
+        EmbeddedChannel client = new EmbeddedChannel(new NettyEncoder(codec, newUrl(null)));
+        client.writeOutbound(new Handshake(Constants.PROTOCOL_V2));
+        ByteBuf handshake = (ByteBuf) client.readOutbound();
+        // 协商消息是合法的v1帧：只有帧头，长度为0
+        assertEquals(Constants.HEADER_SIZE, handshake.readableBytes());
+        assertEquals(Constants.NETTY_MAGIC_TYPE, handshake.getShort(0));
+        assertEquals(Constants.FLAG_HANDSHAKE, handshake.getByte(2));
+        assertEquals(0, handshake.getInt(Constants.HEADER_SIZE - 4));
+
+        URL url = newUrl("1");
+        EmbeddedChannel server = new EmbeddedChannel(
+                new NettyDecoder(codec, url, MAX_FRAME_LENGTH, Constants.HEADER_SIZE, 4),
+                new NettyEncoder(codec, url), new HandshakeHandler(false, 1));
+        server.writeInbound(handshake);
+        assertNull(server.readInbound());
+        assertEquals(Constants.PROTOCOL_V1, Handshake.getVersion(server));
+
+        Handshake reply = (Handshake) decode((ByteBuf) server.readOutbound());
+        assertEquals(Constants.PROTOCOL_V1, reply.getVersion());
+
+        // 客户端收到v1回复后继续使用v1
+        EmbeddedChannel clientHandshake = new EmbeddedChannel(new HandshakeHandler(true, 2));
+        clientHandshake.writeInbound(reply);
+        assertEquals(Constants.PROTOCOL_V1, Handshake.getVersion(clientHandshake));
+
+        DefaultRequest request = newRequest(7);
+        client.writeOutbound(request);
+        server.writeInbound(client.readOutbound());
+        assertRequest(request, server.readInbound());
+    }
+
+    private Object decode(ByteBuf frame) {
+        EmbeddedChannel decoder = newDecoder(newUrl(null));
+        decoder.writeInbound(frame);
+        return decoder.readInbound();
+    }
+
+    private EmbeddedChannel newDecoder(URL url) {
+        return new EmbeddedChannel(new NettyDecoder(codec, url, MAX_FRAME_LENGTH, Constants.HEADER_SIZE, 4));
+    }
+
+    private static URL newUrl(String codecVersion) {
+        Map<String, String> params = new HashMap<>();
+        if (codecVersion != null) {
+            params.put(URLParam.codecVersion.getName(), codecVersion);
+        }
+        return new URL("mango", "127.0.0.1", 0, "test", params);
+    }
+
+    private static DefaultRequest newRequest(long requestId) {
+        DefaultRequest request = new DefaultRequest();
+        request.setRequestId(requestId);
+        request.setInterfaceName("mango.demo.service.DemoService");
+        request.setMethodName("hello");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setArguments(new Object[]{"mango"});
+        return request;
+    }
+
+    private static void assertRequest(DefaultRequest expected, Object actual) {
+        DefaultRequest request = (DefaultRequest) actual;
+        assertEquals(expected.getRequestId(), request.getRequestId());
+        assertEquals(expected.getInterfaceName(), request.getInterfaceName());
+        assertEquals(expected.getMethodName(), request.getMethodName());
+        assertArrayEquals(expected.getArguments(), request.getArguments());
+    }
+}
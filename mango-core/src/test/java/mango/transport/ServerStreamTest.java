@@ -0,0 +1,155 @@
+package mango.transport;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
+import mango.core.DefaultResponse;
+import mango.dispatcher.DirectDispatcher;
+import mango.exception.RpcTimeoutException;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class ServerStreamTest {
+
+    private static final long REQUEST_ID = 42;
+
+    @Test
+    public void testCredits() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ServerStreamHandler());
+        CountingIterator iterator = new CountingIterator(5);
+        newStream(channel, iterator, 2, 0).start();
+        // 初始信用用完后停下
+        assertData(channel, 0);
+        assertData(channel, 1);
+        assertNull(channel.readOutbound());
+
+        channel.writeInbound(StreamFrame.credit(REQUEST_ID, 2));
+        assertData(channel, 2);
+        assertData(channel, 3);
+        assertNull(channel.readOutbound());
+        assertFalse(iterator.closed);
+
+        channel.writeInbound(StreamFrame.credit(REQUEST_ID, 2));
+        assertData(channel, 4);
+        DefaultResponse end = (DefaultResponse) channel.readOutbound();
+        assertEquals(REQUEST_ID, (long) end.getRequestId());
+        assertNull(end.getException());
+        assertTrue(iterator.closed);
+        assertNull(ServerStream.get(channel, REQUEST_ID));
+    }
+
+    @Test
+    public void testCancel() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ServerStreamHandler());
+        CountingIterator iterator = new CountingIterator(100);
+        newStream(channel, iterator, 1, 0).start();
+        assertData(channel, 0);
+        channel.writeInbound(StreamFrame.cancel(REQUEST_ID));
+        assertTrue(iterator.closed);
+        assertNull(ServerStream.get(channel, REQUEST_ID));
+        // 取消后不再发送，也没有结束响应
+        channel.writeInbound(StreamFrame.credit(REQUEST_ID, 10));
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testIdleTimeout() throws InterruptedException {
+        EmbeddedChannel channel = new EmbeddedChannel(new ServerStreamHandler());
+        CountingIterator iterator = new CountingIterator(100);
+        newStream(channel, iterator, 1, 50).start();
+        assertData(channel, 0);
+
+        Thread.sleep(100);
+        channel.runPendingTasks();
+        // 消费端不再归还信用，返回超时并释放迭代器
+        DefaultResponse end = (DefaultResponse) channel.readOutbound();
+        assertTrue(end.getException() instanceof RpcTimeoutException);
+        assertTrue(iterator.closed);
+        assertNull(ServerStream.get(channel, REQUEST_ID));
+    }
+
+    @Test
+    public void testCreditResetsIdleTimeout() throws InterruptedException {
+        EmbeddedChannel channel = new EmbeddedChannel(new ServerStreamHandler());
+        CountingIterator iterator = new CountingIterator(100);
+        newStream(channel, iterator, 1, 300).start();
+        assertData(channel, 0);
+
+        Thread.sleep(200);
+        channel.writeInbound(StreamFrame.credit(REQUEST_ID, 1));
+        assertData(channel, 1);
+        // 第一次停顿开始已超过超时时间，但之后收到过信用
+        Thread.sleep(150);
+        channel.runPendingTasks();
+        assertNull(channel.readOutbound());
+        assertFalse(iterator.closed);
+
+        Thread.sleep(300);
+        channel.runPendingTasks();
+        DefaultResponse end = (DefaultResponse) channel.readOutbound();
+        assertTrue(end.getException() instanceof RpcTimeoutException);
+        assertTrue(iterator.closed);
+    }
+
+    @Test
+    public void testChannelInactive() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ServerStreamHandler());
+        CountingIterator iterator = new CountingIterator(100);
+        newStream(channel, iterator, 1, 0).start();
+        channel.close();
+        assertTrue(iterator.closed);
+    }
+
+    private static ServerStream newStream(EmbeddedChannel channel, Iterator<?> iterator, int window, int idleTimeout) {
+        DefaultRequest request = new DefaultRequest();
+        request.setRequestId(REQUEST_ID);
+        request.setAttachment(URLParam.streamWindow.getName(), String.valueOf(window));
+        return new ServerStream(channel, request, iterator, new DirectDispatcher(), null, idleTimeout);
+    }
+
+    private static void assertData(EmbeddedChannel channel, int expected) {
+        StreamFrame frame = (StreamFrame) channel.readOutbound();
+        assertEquals(REQUEST_ID, frame.getRequestId());
+        assertEquals(expected, frame.getResponse().getResult());
+    }
+
+    private static final class CountingIterator implements Iterator<Integer>, Closeable {
+        private final int count;
+        private int next;
+        volatile boolean closed;
+
+        CountingIterator(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public Integer next() {
+            return next++;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package mango.transport;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import mango.common.URL;
+import mango.common.URLParam;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class WriteQueueTest {
+
+    @Test
+    public void testFlushPerBatch() {
+        FlushRecorder recorder = new FlushRecorder();
+        EmbeddedChannel channel = new EmbeddedChannel(recorder);
+        WriteQueue queue = new WriteQueue(channel, newUrl(4, 0), "test");
+
+        List<ChannelFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(queue.write("msg-" + i));
+        }
+        // 消息由IO线程写出，调用线程不直接写
+        assertEquals(0, recorder.written);
+        channel.runPendingTasks();
+
+        // 每批最多4条，剩余的在后续任务中写出
+        assertEquals(3, recorder.batches.size());
+        assertEquals(4, (int) recorder.batches.get(0));
+        assertEquals(4, (int) recorder.batches.get(1));
+        assertEquals(2, (int) recorder.batches.get(2));
+        for (int i = 0; i < 10; i++) {
+            assertEquals("msg-" + i, channel.readOutbound());
+            assertTrue(futures.get(i).isSuccess());
+        }
+        channel.finish();
+    }
+
+    @Test
+    public void testCoalesceWrites() {
+        FlushRecorder recorder = new FlushRecorder();
+        EmbeddedChannel channel = new EmbeddedChannel(recorder);
+        WriteQueue queue = new WriteQueue(channel, newUrl(128, 0), "test");
+
+        for (int i = 0; i < 5; i++) {
+            queue.write("msg-" + i);
+        }
+        channel.runPendingTasks();
+        // 同一个任务处理前进入队列的消息合并为一次flush
+        assertEquals(1, recorder.batches.size());
+        assertEquals(5, (int) recorder.batches.get(0));
+
+        queue.write("msg-5");
+        channel.runPendingTasks();
+        assertEquals(2, recorder.batches.size());
+        assertEquals(1, (int) recorder.batches.get(1));
+        channel.finish();
+    }
+
+    @Test
+    public void testDelayedDrain() throws Exception {
+        FlushRecorder recorder = new FlushRecorder();
+        EmbeddedChannel channel = new EmbeddedChannel(recorder);
+        WriteQueue queue = new WriteQueue(channel, newUrl(128, 2000), "test");
+
+        for (int i = 0; i < 3; i++) {
+            queue.write("msg-" + i);
+        }
+        channel.runPendingTasks();
+        // 延迟时间未到，消息仍在队列中
+        assertEquals(0, recorder.written);
+
+        Thread.sleep(10);
+        channel.runScheduledPendingTasks();
+        assertEquals(1, recorder.batches.size());
+        assertEquals(3, (int) recorder.batches.get(0));
+        channel.finish();
+    }
+
+    private URL newUrl(int batchSize, int delayMicros) {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.writeBatch.getName(), "true");
+        params.put(URLParam.writeBatchSize.getName(), String.valueOf(batchSize));
+        params.put(URLParam.writeBatchDelay.getName(), String.valueOf(delayMicros));
+        return new URL("mango", "127.0.0.1", 0, "test", params);
+    }
+
+    /**
+     * 记录每次flush之前写出的消息数
+     */
+    private static class FlushRecorder extends ChannelOutboundHandlerAdapter {
+        private final List<Integer> batches = new ArrayList<>();
+        private int written;
+        private int pending;
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            written++;
+            pending++;
+            super.write(ctx, msg, promise);
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            if (pending > 0) {
+                batches.add(pending);
+                pending = 0;
+            }
+            super.flush(ctx);
+        }
+    }
+}
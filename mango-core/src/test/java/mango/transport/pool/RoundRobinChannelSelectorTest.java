@@ -0,0 +1,74 @@
+package mango.transport.pool;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import mango.transport.ChannelWrapper;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class RoundRobinChannelSelectorTest {
+
+    @Test
+    public void testRotateAndSkipUnavailable() {
+        List<ChannelWrapper> channels = newChannels(3);
+        channels.get(1).setAvailable(false);
+        RoundRobinChannelSelector selector = new RoundRobinChannelSelector();
+        Set<ChannelWrapper> selected = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            ChannelWrapper channel = selector.select(channels);
+            assertTrue(channel != channels.get(1));
+            selected.add(channel);
+        }
+        assertEquals(2, selected.size());
+    }
+
+    @Test
+    public void testEmpty() {
+        assertNull(new RoundRobinChannelSelector().select(new CopyOnWriteArrayList<ChannelWrapper>()));
+    }
+
+    @Test
+    public void testConcurrentRemove() throws Exception {
+        final List<ChannelWrapper> channels = newChannels(64);
+        final RoundRobinChannelSelector selector = new RoundRobinChannelSelector();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread selecting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!channels.isEmpty()) {
+                        selector.select(channels);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        selecting.start();
+        while (!channels.isEmpty()) {
+            channels.remove(channels.size() - 1);
+            Thread.yield();
+        }
+        selecting.join();
+        assertNull(failure.get());
+    }
+
+    private static List<ChannelWrapper> newChannels(int n) {
+        List<ChannelWrapper> channels = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < n; i++) {
+            channels.add(new ChannelWrapper(new EmbeddedChannel().newSucceededFuture()));
+        }
+        return channels;
+    }
+}
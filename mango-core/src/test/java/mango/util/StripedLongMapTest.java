@@ -0,0 +1,110 @@
+package mango.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ricky Fung
+ */
+public class StripedLongMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        StripedLongMap<String> map = new StripedLongMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "a"));
+        assertEquals("a", map.put(1L, "b"));
+        assertNull(map.put(-1L, "c"));
+        assertEquals(2, map.size());
+        assertEquals("b", map.get(1L));
+        assertEquals("c", map.remove(-1L));
+        assertNull(map.remove(-1L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testDrain() {
+        StripedLongMap<Long> map = new StripedLongMap<>(4, 4);
+        for (long i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        List<Long> drained = map.drain();
+        Collections.sort(drained);
+        assertEquals(100, drained.size());
+        assertEquals(Long.valueOf(99), drained.get(99));
+        assertTrue(map.isEmpty());
+        assertNull(map.get(5L));
+    }
+
+    @Test
+    public void testConcurrentPutRemove() throws Exception {
+        final StripedLongMap<Long> map = new StripedLongMap<>();
+        final int threads = 8;
+        final int perThread = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long base = (long) t * perThread;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (long i = base; i < base + perThread; i++) {
+                        map.put(i, i);
+                        // 移除一半，剩下的留给最后检查
+                        if ((i & 1) == 0 && !Long.valueOf(i).equals(map.remove(i))) {
+                            throw new IllegalStateException("lost key " + i);
+                        }
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * perThread / 2, map.size());
+        assertEquals(threads * perThread / 2, map.drain().size());
+    }
+
+    @Test
+    public void testRequestIdsUniqueAcrossThreads() throws Exception {
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Set<Long> local = new HashSet<>();
+                    for (int i = 0; i < 5000; i++) {
+                        local.add(RequestIdGenerator.getRequestId());
+                    }
+                    ids.addAll(local);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(20000, ids.size());
+    }
+}
@@ -0,0 +1,89 @@
+package mango.demo.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import mango.codec.Codec;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
+import mango.core.extension.ExtensionLoader;
+import mango.demo.model.User;
+import mango.transport.Handshake;
+import mango.transport.NettyDecoder;
+import mango.transport.NettyEncoder;
+import mango.util.Constants;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对比默认编解码与zeroCopy模式下每次请求的内存分配，v1、v2帧分别测试
+ * @author Ricky Fung
+ */
+public class CodecBenchmark {
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 200000;
+
+    public static void main(String[] args) {
+        // 交替运行多轮，避免JIT预热顺序影响结果
+        for (int round = 0; round < 3; round++) {
+            for (byte version : new byte[]{Constants.PROTOCOL_V1, Constants.PROTOCOL_V2}) {
+                run(false, version);
+                run(true, version);
+            }
+        }
+    }
+
+    private static void run(boolean zeroCopy, byte version) {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.zeroCopy.getName(), String.valueOf(zeroCopy));
+        URL url = new URL(Constants.FRAMEWORK_NAME, "localhost", Constants.DEFAULT_PORT, "mango.demo.service.UserService", params);
+        Codec codec = ExtensionLoader.getExtensionLoader(Codec.class).getExtension(URLParam.codec.getValue());
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new NettyDecoder(codec, url, URLParam.maxContentLength.getIntValue(), Constants.HEADER_SIZE, 4),
+                new NettyEncoder(codec, url));
+        // 跳过协商，直接按指定版本编码
+        channel.attr(Handshake.VERSION).set(version);
+
+        User user = new User();
+        user.setId(1L);
+        user.setName("ricky");
+        user.setPassword("root");
+        user.setAge(18);
+
+        roundTrip(channel, user, WARMUP);
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        roundTrip(channel, user, ITERATIONS);
+
+        long costNanos = System.nanoTime() - start;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes;
+        System.out.println(String.format("v%d zeroCopy=%s, %d round trips, %.1f ns/op, %d bytes/op",
+                version, zeroCopy, ITERATIONS, (double) costNanos / ITERATIONS, allocated / ITERATIONS));
+        channel.finishAndReleaseAll();
+    }
+
+    private static void roundTrip(EmbeddedChannel channel, User user, int times) {
+        for (int i = 0; i < times; i++) {
+            DefaultRequest request = new DefaultRequest();
+            request.setRequestId((long) i);
+            request.setInterfaceName("mango.demo.service.UserService");
+            request.setMethodName("update");
+            request.setParameterTypes(new Class<?>[]{User.class});
+            request.setArguments(new Object[]{user});
+            request.setType(Constants.REQUEST_SYNC);
+
+            channel.writeOutbound(request);
+            ByteBuf frame = channel.readOutbound();
+            channel.writeInbound(frame);
+            channel.readInbound();
+        }
+    }
+}
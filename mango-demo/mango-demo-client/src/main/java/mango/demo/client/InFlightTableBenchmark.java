@@ -0,0 +1,108 @@
+package mango.demo.client;
+
+import mango.util.RequestIdGenerator;
+import mango.util.StripedLongMap;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对比 全局AtomicLong + ConcurrentHashMap&lt;Long, V&gt; 与 分段id + StripedLongMap
+ * 的请求登记/移除吞吐量和内存分配，分别在1、8、64个线程下运行
+ * @author Ricky Fung
+ */
+public class InFlightTableBenchmark {
+
+    // 每轮所有线程合计的操作数
+    private static final int TOTAL_OPS = 8000000;
+    // 每个线程同时在途的请求数
+    private static final int WINDOW = 16;
+    private static final Object VALUE = new Object();
+
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = {1, 8, 64};
+        // 第一轮作为预热
+        for (int round = 0; round < 2; round++) {
+            for (int threads : threadCounts) {
+                run(new MapTable(), threads, round > 0);
+                run(new StripedTable(), threads, round > 0);
+            }
+        }
+    }
+
+    private static void run(final Table table, int threads, boolean print) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong allocated = new AtomicLong();
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final int ops = TOTAL_OPS / threads;
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long[] window = new long[WINDOW];
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long threadId = Thread.currentThread().getId();
+                    long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+                    for (int i = 0; i < ops; i++) {
+                        int slot = i % WINDOW;
+                        if (i >= WINDOW) {
+                            table.remove(window[slot]);
+                        }
+                        long id = table.nextId();
+                        table.put(id);
+                        window[slot] = id;
+                    }
+                    for (int i = 0; i < WINDOW && i < ops; i++) {
+                        table.remove(window[i]);
+                    }
+                    allocated.addAndGet(threadMXBean.getThreadAllocatedBytes(threadId) - startBytes);
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        long totalOps = (long) ops * threads;
+        if (print) {
+            System.out.println(String.format("%-12s threads=%-3d %,12d ops/s  %6.1f bytes/op",
+                    table.name(), threads, totalOps * 1000000000L / elapsed, (double) allocated.get() / totalOps));
+        }
+    }
+
+    private interface Table {
+        String name();
+        long nextId();
+        void put(long id);
+        void remove(long id);
+    }
+
+    private static class MapTable implements Table {
+        private final AtomicLong idGenerator = new AtomicLong(1);
+        private final ConcurrentHashMap<Long, Object> map = new ConcurrentHashMap<>(256);
+
+        public String name() { return "chm"; }
+        public long nextId() { return idGenerator.getAndIncrement(); }
+        public void put(long id) { map.put(id, VALUE); }
+        public void remove(long id) { map.remove(id); }
+    }
+
+    private static class StripedTable implements Table {
+        private final StripedLongMap<Object> map = new StripedLongMap<>();
+
+        public String name() { return "striped"; }
+        public long nextId() { return RequestIdGenerator.getRequestId(); }
+        public void put(long id) { map.put(id, VALUE); }
+        public void remove(long id) { map.remove(id); }
+    }
+}
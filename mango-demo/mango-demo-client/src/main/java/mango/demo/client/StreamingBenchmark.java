@@ -0,0 +1,144 @@
+package mango.demo.client;
+
+import mango.cluster.Cluster;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.extension.ExtensionLoader;
+import mango.registry.NotifyListener;
+import mango.rpc.ConfigHandler;
+import mango.rpc.Exporter;
+import mango.util.Constants;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 对比一次性返回List与流式返回Iterator：同样的元素数，记录耗时和调用期间的堆内存峰值
+ * 服务端和客户端在同一进程，List方式在元素总大小超过maxContentLength时直接失败
+ * 参数：-Dcount=20000 -Dsize=1024 -Dwindow=64
+ * @author Ricky Fung
+ */
+public class StreamingBenchmark {
+
+    private static final int PORT = 21882;
+
+    public interface RecordService {
+
+        List<String> list(int count, int size);
+
+        Iterator<String> stream(int count, int size);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = Integer.getInteger("count", 20000);
+        int size = Integer.getInteger("size", 1024);
+        String window = System.getProperty("window", URLParam.streamWindow.getValue());
+
+        ConfigHandler configHandler = ExtensionLoader.getExtensionLoader(ConfigHandler.class).getExtension(Constants.DEFAULT_VALUE);
+        List<URL> registryUrls = Collections.emptyList();
+
+        Map<String, String> serviceParams = new HashMap<>();
+        serviceParams.put(URLParam.side.getName(), Constants.PROVIDER);
+        serviceParams.put(URLParam.requestTimeout.getName(), "60000");
+        serviceParams.put(URLParam.maxContentLength.getName(), String.valueOf(Integer.MAX_VALUE));
+        URL serviceUrl = new URL(Constants.FRAMEWORK_NAME, "127.0.0.1", PORT, RecordService.class.getName(), serviceParams);
+        Exporter<RecordService> exporter = configHandler.export(RecordService.class, new DefaultRecordService(), serviceUrl, registryUrls);
+
+        Map<String, String> refParams = new HashMap<>();
+        refParams.put(URLParam.side.getName(), Constants.CONSUMER);
+        refParams.put(URLParam.check.getName(), "false");
+        refParams.put(URLParam.streamWindow.getName(), window);
+        refParams.put(URLParam.maxContentLength.getName(), String.valueOf(Integer.MAX_VALUE));
+        URL refUrl = new URL(Constants.FRAMEWORK_NAME, "127.0.0.1", PORT, RecordService.class.getName(), refParams);
+        Cluster<RecordService> cluster = configHandler.buildCluster(RecordService.class, refUrl, registryUrls);
+        // 不经过注册中心，直接通知服务地址
+        ((NotifyListener) cluster).notify(new URL("direct", "127.0.0.1", 0, "direct"),
+                Collections.singletonList(serviceUrl));
+        RecordService recordService = configHandler.refer(RecordService.class, Collections.singletonList(cluster), "jdk");
+
+        // 预热
+        run("warmup", recordService, 1000, size, true);
+        run("warmup", recordService, 1000, size, false);
+
+        run("list", recordService, count, size, false);
+        run("stream-window-" + window, recordService, count, size, true);
+
+        cluster.destroy();
+        exporter.destroy();
+        System.exit(0);
+    }
+
+    private static void run(String name, RecordService recordService, int count, int size, boolean streaming) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        long peak = 0;
+        long received = 0;
+        long begin = System.nanoTime();
+        try {
+            Iterator<String> it = streaming ? recordService.stream(count, size) : recordService.list(count, size).iterator();
+            while (it.hasNext()) {
+                it.next();
+                if (++received % 256 == 0) {
+                    peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed() - baseline);
+                }
+            }
+        } catch (Exception e) {
+            System.out.println(name + " failed: " + e);
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (!"warmup".equals(name)) {
+            System.out.println(String.format("%-20s received=%,d %,d ms heap peak=%,d KB",
+                    name, received, elapsed / 1000000, peak / 1024));
+        }
+    }
+
+    private static class DefaultRecordService implements RecordService {
+
+        @Override
+        public List<String> list(int count, int size) {
+            List<String> records = new ArrayList<>(count);
+            Iterator<String> it = stream(count, size);
+            while (it.hasNext()) {
+                records.add(it.next());
+            }
+            return records;
+        }
+
+        @Override
+        public Iterator<String> stream(final int count, final int size) {
+            // 元素按需生成，服务端同样不需要持有整个结果
+            return new Iterator<String>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < count;
+                }
+
+                @Override
+                public String next() {
+                    if (index >= count) {
+                        throw new NoSuchElementException();
+                    }
+                    char[] chars = new char[size];
+                    Arrays.fill(chars, (char) ('a' + index++ % 26));
+                    return new String(chars);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
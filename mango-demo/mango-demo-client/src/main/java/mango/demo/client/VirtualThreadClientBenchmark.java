@@ -0,0 +1,139 @@
+package mango.demo.client;
+
+import mango.cluster.Cluster;
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.extension.ExtensionLoader;
+import mango.demo.service.DemoService;
+import mango.registry.NotifyListener;
+import mango.rpc.ConfigHandler;
+import mango.rpc.Exporter;
+import mango.util.Constants;
+import mango.util.VirtualThreads;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 大量虚拟线程同步调用同一个服务提供者，走完整的 代理 -> 集群 -> 引用 -> 客户端 -> future 路径，
+ * 与固定大小的平台线程池对比吞吐量；提供者用sleep模拟IO等待
+ * 需要JDK 21+，可以加 -Djdk.tracePinnedThreads=short 检查调用路径上是否有pin
+ * 参数：-Dcallers=100000 -Dcalls=10 -Dplatform=200 -Dsleep=10
+ * @author Ricky Fung
+ */
+public class VirtualThreadClientBenchmark {
+
+    private static final int PORT = 21880;
+
+    public static void main(String[] args) throws Exception {
+        int callers = Integer.getInteger("callers", 100000);
+        int calls = Integer.getInteger("calls", 10);
+        int platform = Integer.getInteger("platform", 200);
+        final int sleep = Integer.getInteger("sleep", 10);
+
+        ConfigHandler configHandler = ExtensionLoader.getExtensionLoader(ConfigHandler.class).getExtension(Constants.DEFAULT_VALUE);
+        List<URL> registryUrls = Collections.emptyList();
+
+        Map<String, String> serviceParams = new HashMap<>();
+        serviceParams.put(URLParam.side.getName(), Constants.PROVIDER);
+        // 引用的超时时间取自服务地址
+        serviceParams.put(URLParam.requestTimeout.getName(), "60000");
+        // 线程池执行时core线程满了才排队，虚拟线程执行时最多并发 maxWorkerThread + workerQueueSize 个请求
+        serviceParams.put(URLParam.minWorkerThread.getName(), "1000");
+        serviceParams.put(URLParam.maxWorkerThread.getName(), "1000");
+        serviceParams.put(URLParam.workerQueueSize.getName(), String.valueOf(callers));
+        URL serviceUrl = new URL(Constants.FRAMEWORK_NAME, "127.0.0.1", PORT, DemoService.class.getName(), serviceParams);
+        Exporter<DemoService> exporter = configHandler.export(DemoService.class, new SleepDemoService(sleep), serviceUrl, registryUrls);
+
+        Map<String, String> refParams = new HashMap<>();
+        refParams.put(URLParam.side.getName(), Constants.CONSUMER);
+        refParams.put(URLParam.check.getName(), "false");
+        refParams.put(URLParam.maxPoolSize.getName(), "4");
+        URL refUrl = new URL(Constants.FRAMEWORK_NAME, "127.0.0.1", PORT, DemoService.class.getName(), refParams);
+        Cluster<DemoService> cluster = configHandler.buildCluster(DemoService.class, refUrl, registryUrls);
+        // 不经过注册中心，直接通知服务地址
+        ((NotifyListener) cluster).notify(new URL("direct", "127.0.0.1", 0, "direct"),
+                Collections.singletonList(serviceUrl));
+        DemoService demoService = configHandler.refer(DemoService.class, Collections.singletonList(cluster), "jdk");
+
+        // 预热
+        run("warmup", Executors.newFixedThreadPool(platform), demoService, platform, 100);
+
+        run("platform-" + platform, Executors.newFixedThreadPool(platform), demoService, platform, callers * calls / platform);
+        if (VirtualThreads.isSupported()) {
+            run("virtual-" + callers, VirtualThreads.newThreadPerTaskExecutor("bench-vt-"), demoService, callers, calls);
+        } else {
+            System.out.println("virtual threads are not supported on JDK " + System.getProperty("java.version") + ", skipped");
+        }
+
+        cluster.destroy();
+        exporter.destroy();
+        System.exit(0);
+    }
+
+    private static void run(String name, ExecutorService executor, final DemoService demoService,
+                            int callers, final int calls) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(callers);
+        final AtomicLong failed = new AtomicLong();
+        long begin = System.nanoTime();
+        for (int i = 0; i < callers; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < calls; j++) {
+                            if (!"ping".equals(demoService.echo("ping"))) {
+                                failed.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        if (failed.incrementAndGet() == 1) {
+                            e.printStackTrace();
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        long total = (long) callers * calls;
+        System.out.println(String.format("%-16s calls=%,d failed=%,d %,d ms %,d calls/s",
+                name, total, failed.get(), elapsed / 1000000, total * 1000000000L / elapsed));
+    }
+
+    private static class SleepDemoService implements DemoService {
+        private final int sleep;
+
+        SleepDemoService(int sleep) {
+            this.sleep = sleep;
+        }
+
+        @Override
+        public void hello(String msg) {
+        }
+
+        @Override
+        public String echo(String msg) {
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return msg;
+        }
+
+        @Override
+        public Map<String, String> introduce(String name, List<String> hobbies) {
+            return null;
+        }
+    }
+}
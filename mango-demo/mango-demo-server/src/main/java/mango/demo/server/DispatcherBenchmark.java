@@ -0,0 +1,145 @@
+package mango.demo.server;
+
+import mango.common.URL;
+import mango.common.URLParam;
+import mango.core.DefaultRequest;
+import mango.core.Response;
+import mango.demo.service.DemoService;
+import mango.rpc.DefaultProvider;
+import mango.rpc.MessageRouter;
+import mango.transport.NettyClientImpl;
+import mango.transport.NettyServerImpl;
+import mango.util.Constants;
+import mango.util.RequestIdGenerator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对比线程池派发(pool)与环形队列派发(ringbuffer，三种等待策略)在小请求高QPS下的吞吐量和延迟
+ * 服务端和客户端在同一进程，服务方法不做任何处理
+ * 参数：-Dthreads=64 -Dcalls=20000
+ * @author Ricky Fung
+ */
+public class DispatcherBenchmark {
+
+    private static final int PORT = 21881;
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("threads", 64);
+        int calls = Integer.getInteger("calls", 20000);
+
+        String[][] cases = {
+                {"pool", null},
+                {"ringbuffer", "park"},
+                {"ringbuffer", "yield"},
+                {"ringbuffer", "busyspin"},
+        };
+        // 第一轮作为预热
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < cases.length; i++) {
+                run(PORT + i, cases[i][0], cases[i][1], threads, round > 0 ? calls : calls / 10, round > 0);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(int port, String dispatcher, String waitStrategy, int threads, final int calls,
+                            boolean print) throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put(URLParam.requestTimeout.getName(), "5000");
+        params.put(URLParam.dispatcher.getName(), dispatcher);
+        params.put(URLParam.virtualThreads.getName(), "false");
+        params.put(URLParam.workerQueueSize.getName(), "65536");
+        if (waitStrategy != null) {
+            params.put(URLParam.waitStrategy.getName(), waitStrategy);
+        }
+        URL url = new URL(Constants.FRAMEWORK_NAME, "127.0.0.1", port, DemoService.class.getName(), params);
+
+        NettyServerImpl server = new NettyServerImpl(url, new MessageRouter(
+                new DefaultProvider<DemoService>(new EchoDemoService(), url, DemoService.class)));
+        server.open();
+        final NettyClientImpl client = new NettyClientImpl(url);
+        client.open();
+
+        final long[][] latencies = new long[threads][calls];
+        final AtomicLong failed = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final long[] latency = latencies[t];
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < calls; i++) {
+                            DefaultRequest request = newRequest();
+                            long begin = System.nanoTime();
+                            Response response = client.invokeSync(request);
+                            latency[i] = System.nanoTime() - begin;
+                            if (response.getException() != null) {
+                                failed.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        client.close();
+        server.close();
+
+        if (print) {
+            long[] all = new long[threads * calls];
+            for (int t = 0; t < threads; t++) {
+                System.arraycopy(latencies[t], 0, all, t * calls, calls);
+            }
+            Arrays.sort(all);
+            long total = (long) threads * calls;
+            String name = waitStrategy == null ? dispatcher : dispatcher + "-" + waitStrategy;
+            System.out.println(String.format("%-20s %,10d calls/s  p50=%,7dus  p99=%,7dus  failed=%d",
+                    name, total * 1000000000L / elapsed, all[all.length / 2] / 1000,
+                    all[(int) (all.length * 0.99)] / 1000, failed.get()));
+        }
+    }
+
+    private static DefaultRequest newRequest() {
+        DefaultRequest request = new DefaultRequest();
+        request.setRequestId(RequestIdGenerator.getRequestId());
+        request.setInterfaceName(DemoService.class.getName());
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class[]{String.class});
+        request.setArguments(new Object[]{"ping"});
+        request.setType(Constants.REQUEST_SYNC);
+        return request;
+    }
+
+    private static class EchoDemoService implements DemoService {
+        @Override
+        public void hello(String msg) {
+        }
+
+        @Override
+        public String echo(String msg) {
+            return msg;
+        }
+
+        @Override
+        public Map<String, String> introduce(String name, List<String> hobbies) {
+            return null;
+        }
+    }
+}
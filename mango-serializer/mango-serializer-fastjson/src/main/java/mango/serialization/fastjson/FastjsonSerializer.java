@@ -1,27 +1,26 @@
 package mango.serialization.fastjson;
 
 import com.alibaba.fastjson.JSON;
-import mango.codec.Serializer;
-import mango.util.StringUtils;
+import mango.serialization.AbstractSerializer;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * ${DESCRIPTION}
  *
  * @author Ricky Fung
  */
-public class FastjsonSerializer implements Serializer {
+public class FastjsonSerializer extends AbstractSerializer {
 
     @Override
-    public byte[] serialize(Object msg) throws IOException {
-        String jsonString = JSON.toJSONString(msg);
-        return StringUtils.getBytes(jsonString);
+    public void serialize(Object msg, OutputStream out) throws IOException {
+        JSON.writeJSONString(out, msg);
     }
 
     @Override
-    public <T> T deserialize(byte[] data, Class<T> type) throws IOException {
-        String jsonString = StringUtils.getString(data);
-        return JSON.parseObject(jsonString, type);
+    public <T> T deserialize(InputStream in, Class<T> type) throws IOException {
+        return JSON.parseObject(in, type);
     }
 }
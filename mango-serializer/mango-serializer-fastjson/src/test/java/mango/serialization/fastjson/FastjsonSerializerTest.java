@@ -0,0 +1,98 @@
+package mango.serialization.fastjson;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ricky Fung
+ */
+public class FastjsonSerializerTest {
+
+    private final FastjsonSerializer serializer = new FastjsonSerializer();
+
+    @Test
+    public void testStreamRoundTrip() throws Exception {
+        User user = new User("ricky", 28, Arrays.asList("a", "b"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(user, out);
+
+        assertEquals(user, serializer.deserialize(new ByteArrayInputStream(out.toByteArray()), User.class));
+        // 流式和byte[]方式写出的内容可以互相读取
+        assertEquals(user, serializer.deserialize(serializer.serialize(user), User.class));
+    }
+
+    @Test
+    public void testByteBufRoundTrip() throws Exception {
+        User user = new User("ricky", 28, Arrays.asList("a", "b"));
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.serialize(user, buf);
+            assertEquals(user, serializer.deserialize(buf, User.class));
+        } finally {
+            buf.release();
+        }
+    }
+
+    public static class User implements Serializable {
+        private String name;
+        private int age;
+        private List<String> tags = new ArrayList<>();
+
+        public User() {
+        }
+
+        public User(String name, int age, List<String> tags) {
+            this.name = name;
+            this.age = age;
+            this.tags = new ArrayList<>(tags);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof User)) {
+                return false;
+            }
+            User other = (User) o;
+            return age == other.age && name.equals(other.name) && tags.equals(other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + age;
+        }
+    }
+}
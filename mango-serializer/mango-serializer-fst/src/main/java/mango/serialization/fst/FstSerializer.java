@@ -3,10 +3,13 @@ package mango.serialization.fst;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import mango.codec.Serializer;
+import mango.serialization.AbstractSerializer;
 import org.nustaq.serialization.FSTConfiguration;
+import org.nustaq.serialization.FSTObjectOutput;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -14,7 +17,7 @@ import java.util.concurrent.ExecutionException;
  *
  * @author Ricky Fung
  */
-public class FstSerializer implements Serializer {
+public class FstSerializer extends AbstractSerializer {
 
     private static final LoadingCache<Class<?>, FSTConfiguration> configurationLoadingCache = CacheBuilder.newBuilder()
             .build(new CacheLoader<Class<?>, FSTConfiguration>() {
@@ -34,6 +37,25 @@ public class FstSerializer implements Serializer {
         return (T) getFSTConfiguration(type).asObject(data);
     }
 
+    @Override
+    public void serialize(Object msg, OutputStream out) throws IOException {
+        // FSTObjectOutput由FSTConfiguration按线程复用，不能关闭
+        FSTObjectOutput output = getFSTConfiguration(msg.getClass()).getObjectOutput(out);
+        output.writeObject(msg);
+        output.flush();
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> type) throws IOException {
+        try {
+            return (T) getFSTConfiguration(type).getObjectInput(in).readObject();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("fst deserialize error, class:" + type, e);
+        }
+    }
+
     private static FSTConfiguration getFSTConfiguration(Class<?> clz) throws IOException {
         try {
             return configurationLoadingCache.get(clz);
@@ -2,28 +2,26 @@ package mango.serialization.hessian;
 
 import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
-import mango.codec.Serializer;
+import mango.serialization.AbstractSerializer;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * ${DESCRIPTION}
  *
  * @author Ricky Fung
  */
-public class HessianSerializer implements Serializer {
+public class HessianSerializer extends AbstractSerializer {
 
     @Override
-    public byte[] serialize(Object msg) throws IOException {
+    public void serialize(Object msg, OutputStream os) throws IOException {
         Hessian2Output out = null;
         try {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            out = new Hessian2Output(bos);
+            out = new Hessian2Output(os);
             out.writeObject(msg);
             out.flush();
-            return bos.toByteArray();
         } finally {
             if(out!=null){
                 out.close();
@@ -32,10 +30,10 @@ public class HessianSerializer implements Serializer {
     }
 
     @Override
-    public <T> T deserialize(byte[] buf, Class<T> type) throws IOException {
+    public <T> T deserialize(InputStream is, Class<T> type) throws IOException {
         Hessian2Input input = null;
         try {
-            input = new Hessian2Input(new ByteArrayInputStream(buf));
+            input = new Hessian2Input(is);
             return (T) input.readObject(type);
         } finally {
             if(input!=null){
@@ -1,28 +1,43 @@
 package mango.serialization.jackson;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import mango.codec.Serializer;
-import mango.util.StringUtils;
+import mango.serialization.AbstractSerializer;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * ${DESCRIPTION}
  *
  * @author Ricky Fung
  */
-public class JacksonSerializer implements Serializer {
+public class JacksonSerializer extends AbstractSerializer {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            // 流由调用方管理，序列化完成后不关闭
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
 
     @Override
     public byte[] serialize(Object msg) throws IOException {
-        String jsonString = objectMapper.writeValueAsString(msg);
-        return StringUtils.getBytes(jsonString);
+        return objectMapper.writeValueAsBytes(msg);
     }
 
     @Override
     public <T> T deserialize(byte[] data, Class<T> type) throws IOException {
-        String jsonString =  StringUtils.getString(data);
-        return objectMapper.readValue(jsonString, type);
+        return objectMapper.readValue(data, type);
+    }
+
+    @Override
+    public void serialize(Object msg, OutputStream out) throws IOException {
+        objectMapper.writeValue(out, msg);
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> type) throws IOException {
+        return objectMapper.readValue(in, type);
     }
 }
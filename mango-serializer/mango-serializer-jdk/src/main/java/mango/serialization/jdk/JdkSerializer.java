@@ -1,43 +1,28 @@
 package mango.serialization.jdk;
 
-import mango.codec.Serializer;
-import mango.util.IoUtils;
+import mango.serialization.AbstractSerializer;
 
 import java.io.*;
 
 /**
  * @author Ricky Fung
  */
-public class JdkSerializer implements Serializer {
+public class JdkSerializer extends AbstractSerializer {
 
     @Override
-    public byte[] serialize(Object msg) throws IOException {
-        ObjectOutputStream output = null;
-        ByteArrayOutputStream baos = null;
-        try {
-            baos = new ByteArrayOutputStream();
-            output = new ObjectOutputStream(baos);
-            output.writeObject(msg);
-            output.flush();
-
-            return baos.toByteArray();
-        } finally {
-            IoUtils.closeQuietly(baos);
-            output.close();
-        }
+    public void serialize(Object msg, OutputStream out) throws IOException {
+        ObjectOutputStream output = new ObjectOutputStream(out);
+        output.writeObject(msg);
+        output.flush();
     }
 
     @Override
-    public <T> T deserialize(byte[] data, Class<T> type) throws IOException {
-        // Read Obj from File
-        ObjectInputStream input = null;
+    public <T> T deserialize(InputStream in, Class<T> type) throws IOException {
         try {
-            input = new ObjectInputStream(new ByteArrayInputStream(data));
+            ObjectInputStream input = new ObjectInputStream(in);
             return (T) input.readObject();
         } catch (ClassNotFoundException e) {
             throw new IOException("class not found", e);
-        } finally {
-            IoUtils.closeQuietly(input);
         }
     }
 }
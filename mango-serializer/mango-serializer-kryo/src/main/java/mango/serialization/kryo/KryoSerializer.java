@@ -3,19 +3,19 @@ package mango.serialization.kryo;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
-import mango.codec.Serializer;
+import mango.serialization.AbstractSerializer;
 import org.objenesis.strategy.StdInstantiatorStrategy;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * ${DESCRIPTION}
  *
  * @author Ricky Fung
  */
-public class KryoSerializer implements Serializer {
+public class KryoSerializer extends AbstractSerializer {
 
     private static final ThreadLocal<Kryo> THREAD_LOCAL = new ThreadLocal<Kryo>(){
         @Override
@@ -27,25 +27,43 @@ public class KryoSerializer implements Serializer {
         }
     };
 
-    @Override
-    public byte[] serialize(Object msg) throws IOException {
-        try(ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            Output output = new Output(bos)){
+    /**
+     * Output/Input自带缓冲区，按线程复用，每次只切换底层的流
+     */
+    private static final ThreadLocal<Output> OUTPUT = new ThreadLocal<Output>(){
+        @Override
+        protected Output initialValue() {
+            return new Output(4096);
+        }
+    };
 
-            Kryo kryo = THREAD_LOCAL.get();
-            kryo.writeObject(output, msg);
-            return output.toBytes();
+    private static final ThreadLocal<Input> INPUT = new ThreadLocal<Input>(){
+        @Override
+        protected Input initialValue() {
+            return new Input(4096);
         }
-    }
+    };
 
     @Override
-    public <T> T deserialize(byte[] buf, Class<T> type) throws IOException {
-
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(buf);
-             Input input = new Input(bis)) {
+    public void serialize(Object msg, OutputStream out) throws IOException {
+        Output output = OUTPUT.get();
+        output.setOutputStream(out);
+        try {
+            THREAD_LOCAL.get().writeObject(output, msg);
+            output.flush();
+        } finally {
+            output.setOutputStream(null);
+        }
+    }
 
-            Kryo kryo = THREAD_LOCAL.get();
-            return kryo.readObject(input, type);
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> type) throws IOException {
+        Input input = INPUT.get();
+        input.setInputStream(in);
+        try {
+            return THREAD_LOCAL.get().readObject(input, type);
+        } finally {
+            input.setInputStream(null);
         }
     }
 }
@@ -0,0 +1,149 @@
+package mango.serialization.kryo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ricky Fung
+ */
+public class KryoSerializerTest {
+
+    private final KryoSerializer serializer = new KryoSerializer();
+
+    @Test
+    public void testStreamRoundTrip() throws Exception {
+        User user = new User("ricky", 28, Arrays.asList("a", "b"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(user, out);
+
+        assertEquals(user, serializer.deserialize(new ByteArrayInputStream(out.toByteArray()), User.class));
+        // 流式和byte[]方式写出的内容可以互相读取
+        assertEquals(user, serializer.deserialize(serializer.serialize(user), User.class));
+    }
+
+    @Test
+    public void testByteBufRoundTrip() throws Exception {
+        User user = new User("ricky", 28, Arrays.asList("a", "b"));
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.serialize(user, buf);
+            assertEquals(user, serializer.deserialize(buf, User.class));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testThreadLocalBufferReuse() throws Exception {
+        // 超过Output/Input初始缓冲区的大对象之后再写小对象，复用的缓冲区不能残留上一次的数据
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longName.append('x');
+        }
+        User large = new User(longName.toString(), 1, Arrays.asList("large"));
+        User small = new User("small", 2, Arrays.asList("s"));
+
+        ByteArrayOutputStream largeOut = new ByteArrayOutputStream();
+        serializer.serialize(large, largeOut);
+        ByteArrayOutputStream smallOut = new ByteArrayOutputStream();
+        serializer.serialize(small, smallOut);
+
+        assertEquals(large, serializer.deserialize(new ByteArrayInputStream(largeOut.toByteArray()), User.class));
+        assertEquals(small, serializer.deserialize(new ByteArrayInputStream(smallOut.toByteArray()), User.class));
+        assertEquals(large, serializer.deserialize(new ByteArrayInputStream(largeOut.toByteArray()), User.class));
+    }
+
+    @Test
+    public void testConcurrentThreads() throws Exception {
+        final Throwable[] error = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            User user = new User("user-" + id, i, Arrays.asList(String.valueOf(i)));
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            serializer.serialize(user, out);
+                            assertEquals(user, serializer.deserialize(new ByteArrayInputStream(out.toByteArray()), User.class));
+                        }
+                    } catch (Throwable e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (error[0] != null) {
+            throw new AssertionError(error[0]);
+        }
+    }
+
+    public static class User implements Serializable {
+        private String name;
+        private int age;
+        private List<String> tags = new ArrayList<>();
+
+        public User() {
+        }
+
+        public User(String name, int age, List<String> tags) {
+            this.name = name;
+            this.age = age;
+            this.tags = new ArrayList<>(tags);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof User)) {
+                return false;
+            }
+            User other = (User) o;
+            return age == other.age && name.equals(other.name) && tags.equals(other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + age;
+        }
+    }
+}
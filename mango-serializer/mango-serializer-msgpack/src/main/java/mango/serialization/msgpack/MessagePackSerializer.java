@@ -1,18 +1,26 @@
 package mango.serialization.msgpack;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import mango.codec.Serializer;
+import mango.serialization.AbstractSerializer;
 import org.msgpack.jackson.dataformat.MessagePackFactory;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * msgpack-java: https://github.com/msgpack/msgpack-java
  *
  * @author Ricky Fung
  */
-public class MessagePackSerializer implements Serializer {
+public class MessagePackSerializer extends AbstractSerializer {
 
-    private final ObjectMapper objectMapper = new ObjectMapper(new MessagePackFactory());;
+    private final ObjectMapper objectMapper = new ObjectMapper(new MessagePackFactory())
+            // 流由调用方管理，序列化完成后不关闭
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
 
     @Override
     public byte[] serialize(Object msg) throws IOException {
@@ -23,4 +31,14 @@ public class MessagePackSerializer implements Serializer {
     public <T> T deserialize(byte[] buf, Class<T> type) throws IOException {
         return objectMapper.readValue(buf, type);
     }
+
+    @Override
+    public void serialize(Object msg, OutputStream out) throws IOException {
+        objectMapper.writeValue(out, msg);
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> type) throws IOException {
+        return objectMapper.readValue(in, type);
+    }
 }
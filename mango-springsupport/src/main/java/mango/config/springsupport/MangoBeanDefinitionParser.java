@@ -95,6 +95,33 @@ public class MangoBeanDefinitionParser implements BeanDefinitionParser {
             parseCommonProperty("buffer-size", "bufferSize", element, bd, parserContext);
             parseCommonProperty("payload", null, element, bd, parserContext);
             parseCommonProperty("heartbeat", null, element, bd, parserContext);
+            parseCommonProperty("zero-copy", "zeroCopy", element, bd, parserContext);
+            parseCommonProperty("transport", null, element, bd, parserContext);
+            parseCommonProperty("write-batch", "writeBatch", element, bd, parserContext);
+            parseCommonProperty("write-batch-size", "writeBatchSize", element, bd, parserContext);
+            parseCommonProperty("write-batch-delay", "writeBatchDelay", element, bd, parserContext);
+            parseCommonProperty("codec-version", "codecVersion", element, bd, parserContext);
+            parseCommonProperty("compression", "compression", element, bd, parserContext);
+            parseCommonProperty("compress-threshold", "compressThreshold", element, bd, parserContext);
+            parseCommonProperty("stream-window", "streamWindow", element, bd, parserContext);
+            parseCommonProperty("write-buffer-high-water-mark", "writeBufferHighWaterMark", element, bd, parserContext);
+            parseCommonProperty("write-buffer-low-water-mark", "writeBufferLowWaterMark", element, bd, parserContext);
+            parseCommonProperty("max-in-flight", "maxInFlight", element, bd, parserContext);
+            parseCommonProperty("backpressure", null, element, bd, parserContext);
+            parseCommonProperty("epoll-mode", "epollMode", element, bd, parserContext);
+            parseCommonProperty("tcp-quick-ack", "tcpQuickAck", element, bd, parserContext);
+            parseCommonProperty("busy-poll", "busyPoll", element, bd, parserContext);
+            parseCommonProperty("backlog", null, element, bd, parserContext);
+            parseCommonProperty("acceptors", null, element, bd, parserContext);
+            parseCommonProperty("dispatcher", null, element, bd, parserContext);
+            parseCommonProperty("worker-queue-size", "workerQueueSize", element, bd, parserContext);
+            parseCommonProperty("codel-target", "codelTarget", element, bd, parserContext);
+            parseCommonProperty("codel-interval", "codelInterval", element, bd, parserContext);
+            parseCommonProperty("adaptive-lifo", "adaptiveLifo", element, bd, parserContext);
+            parseCommonProperty("virtual-threads", "virtualThreads", element, bd, parserContext);
+            parseCommonProperty("ring-buffer-workers", "ringBufferWorkers", element, bd, parserContext);
+            parseCommonProperty("ring-buffer-size", "ringBufferSize", element, bd, parserContext);
+            parseCommonProperty("wait-strategy", "waitStrategy", element, bd, parserContext);
             parseCommonProperty("default", "isDefault", element, bd, parserContext);
         } else if (RegistryConfig.class.equals(beanClass)) {
             MangoNamespaceHandler.registryDefineNames.add(id);
@@ -145,6 +172,10 @@ public class MangoBeanDefinitionParser implements BeanDefinitionParser {
 
             parseCommonProperty("group", null, element, bd, parserContext);
             parseCommonProperty("version", null, element, bd, parserContext);
+
+            parseCommonProperty("bulkhead-threads", "bulkheadThreads", element, bd, parserContext);
+            parseCommonProperty("bulkhead-queue-size", "bulkheadQueueSize", element, bd, parserContext);
+            parseCommonProperty("bulkhead-methods", "bulkheadMethods", element, bd, parserContext);
         }
         return bd;
     }